@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Templates and models shared by the benchmarks
+ */
+final class BenchmarkTemplates
+{
+    /** Locale used by the benchmarks */
+    static final Locale LOCALE = Locale.FRENCH;
+
+    /** Name of the file template */
+    static final String PAGE = "page.jade";
+
+    /** Name of the freemarker template embedding a jade template */
+    static final String FREEMARKER_PAGE = "page.html";
+
+    private static final int ITEMS = 20;
+    private static final String LAYOUT_TEMPLATE = "doctype html\nhtml\n  head\n    title= title\n  body\n    block content\n";
+    private static final String PAGE_TEMPLATE = "extends layout\nblock content\n  include menu\n  ul.items\n    each item in items\n      li(class=item.kind)\n        a(href=item.url)= item.label\n        span #{item.count} elements\n";
+    private static final String MENU_TEMPLATE = "nav\n  a(href='/') Home\n  a(href='/about') About\n";
+    private static final String FREEMARKER_TEMPLATE = "<p>${title}</p>\n<@jade>\nul.items\n  each item in items\n    li(class=item.kind)\n      a(href=item.url)= item.label\n</@jade>\n";
+
+    /**
+     * Private constructor
+     */
+    private BenchmarkTemplates(  )
+    {
+    }
+
+    /**
+     * Write the benchmark templates in a new temporary directory
+     * @return the directory path, ending with a separator
+     * @throws IOException if the templates cannot be written
+     */
+    static String createTemplateDirectory(  ) throws IOException
+    {
+        Path directory = Files.createTempDirectory( "jade-benchmark" );
+        write( directory, "layout.jade", LAYOUT_TEMPLATE );
+        write( directory, PAGE, PAGE_TEMPLATE );
+        write( directory, "menu.jade", MENU_TEMPLATE );
+        write( directory, FREEMARKER_PAGE, FREEMARKER_TEMPLATE );
+        return directory.toString(  ) + File.separator;
+    }
+
+    /**
+     * Delete a directory created by {@link #createTemplateDirectory()}
+     * @param strDirectory the directory path
+     * @throws IOException if the directory cannot be deleted
+     */
+    static void deleteTemplateDirectory( String strDirectory ) throws IOException
+    {
+        Files.walkFileTree( new File( strDirectory ).toPath(  ), new SimpleFileVisitor<Path>(  )
+            {
+                @Override
+                public FileVisitResult visitFile( Path file, BasicFileAttributes attrs ) throws IOException
+                {
+                    Files.delete( file );
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory( Path dir, IOException e ) throws IOException
+                {
+                    Files.delete( dir );
+                    return FileVisitResult.CONTINUE;
+                }
+            } );
+    }
+
+    /**
+     * Create a jade template service
+     * @param strDirectory the template directory
+     * @return the initialized service
+     */
+    static AbstractJadeTemplateService createJadeService( String strDirectory )
+    {
+        AbstractJadeTemplateService service = new AbstractJadeTemplateService(  )
+            {
+                @Override
+                protected String getAbsolutePathFromRelativePath( String strPath )
+                {
+                    return strPath;
+                }
+            };
+        service.init( strDirectory );
+        return service;
+    }
+
+    /**
+     * Create a Map model
+     * @return the model
+     */
+    static Map<String, Object> createMapModel(  )
+    {
+        List<Map<String, Object>> listItems = new ArrayList<Map<String, Object>>( ITEMS );
+        for ( int i = 0; i < ITEMS; i++ )
+        {
+            Item item = new Item( i );
+            Map<String, Object> mapItem = new HashMap<String, Object>(  );
+            mapItem.put( "kind", item.getKind(  ) );
+            mapItem.put( "url", item.getUrl(  ) );
+            mapItem.put( "label", item.getLabel(  ) );
+            mapItem.put( "count", item.getCount(  ) );
+            listItems.add( mapItem );
+        }
+        Map<String, Object> model = new HashMap<String, Object>(  );
+        model.put( "title", "Benchmark" );
+        model.put( "items", listItems );
+        return model;
+    }
+
+    /**
+     * Create a bean model
+     * @return the model
+     */
+    static Page createBeanModel(  )
+    {
+        return new Page(  );
+    }
+
+    /**
+     * Bean model of the page
+     */
+    public static final class Page
+    {
+        private final List<Item> _listItems = new ArrayList<Item>( ITEMS );
+
+        /**
+         * Constructor
+         */
+        Page(  )
+        {
+            for ( int i = 0; i < ITEMS; i++ )
+            {
+                _listItems.add( new Item( i ) );
+            }
+        }
+
+        /**
+         * Get the title
+         * @return the title
+         */
+        public String getTitle(  )
+        {
+            return "Benchmark";
+        }
+
+        /**
+         * Get the items
+         * @return the items
+         */
+        public List<Item> getItems(  )
+        {
+            return _listItems;
+        }
+    }
+
+    /**
+     * Bean model of an item
+     */
+    public static final class Item
+    {
+        private final int _nIndex;
+
+        /**
+         * Constructor
+         * @param nIndex the item index
+         */
+        Item( int nIndex )
+        {
+            _nIndex = nIndex;
+        }
+
+        /**
+         * Get the kind
+         * @return the kind
+         */
+        public String getKind(  )
+        {
+            return ( ( _nIndex % 2 ) == 0 ) ? "even" : "odd";
+        }
+
+        /**
+         * Get the url
+         * @return the url
+         */
+        public String getUrl(  )
+        {
+            return "/items/" + _nIndex;
+        }
+
+        /**
+         * Get the label
+         * @return the label
+         */
+        public String getLabel(  )
+        {
+            return "Item " + _nIndex;
+        }
+
+        /**
+         * Get the count
+         * @return the count
+         */
+        public int getCount(  )
+        {
+            return _nIndex * 3;
+        }
+    }
+
+    /**
+     * Write a template
+     * @param directory the template directory
+     * @param strName the template name
+     * @param strContent the template content
+     * @throws IOException if the template cannot be written
+     */
+    private static void write( Path directory, String strName, String strContent ) throws IOException
+    {
+        Files.write( directory.resolve( strName ), strContent.getBytes( StandardCharsets.UTF_8 ) );
+    }
+}
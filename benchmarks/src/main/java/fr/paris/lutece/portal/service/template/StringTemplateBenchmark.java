@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import fr.paris.lutece.util.html.HtmlTemplate;
+
+/**
+ * Benchmark of the rendering of String templates, cycling through a number of
+ * distinct template bodies.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class StringTemplateBenchmark
+{
+    /** JMH parameter, named after the command line option */
+    @Param( { "1", "10", "100" } )
+    public int distinctBodies;
+
+    private String _strDirectory;
+    private AbstractJadeTemplateService _service;
+    private Map<String, Object> _model;
+    private String[] _bodies;
+    private int _nNext;
+
+    /**
+     * Create the service and the template bodies
+     * @throws IOException if the templates cannot be written
+     */
+    @Setup( Level.Trial )
+    public void setUp(  ) throws IOException
+    {
+        _strDirectory = BenchmarkTemplates.createTemplateDirectory(  );
+        _service = BenchmarkTemplates.createJadeService( _strDirectory );
+        _model = BenchmarkTemplates.createMapModel(  );
+        _bodies = new String[distinctBodies];
+        for ( int i = 0; i < distinctBodies; i++ )
+        {
+            _bodies[i] = "h1 Body " + i + "\nul.items\n  each item in items\n    li(class=item.kind)= item.label\n";
+        }
+    }
+
+    /**
+     * Delete the templates
+     * @throws IOException if the templates cannot be deleted
+     */
+    @TearDown( Level.Trial )
+    public void tearDown(  ) throws IOException
+    {
+        BenchmarkTemplates.deleteTemplateDirectory( _strDirectory );
+    }
+
+    /**
+     * Render the next String template
+     * @return the rendered template
+     */
+    @Benchmark
+    public HtmlTemplate loadTemplate(  )
+    {
+        String strBody = _bodies[_nNext];
+        _nNext = ( _nNext + 1 ) % _bodies.length;
+        return _service.loadTemplate( strBody, BenchmarkTemplates.LOCALE, _model );
+    }
+}
@@ -35,14 +35,53 @@ package fr.paris.lutece.portal.service.template;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
-import org.apache.commons.beanutils.BeanMap;
+import org.apache.log4j.Logger;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
 
 import de.neuland.jade4j.JadeConfiguration;
-import de.neuland.jade4j.template.FileTemplateLoader;
+import de.neuland.jade4j.model.JadeModel;
+import de.neuland.jade4j.parser.Parser;
+import de.neuland.jade4j.parser.node.Node;
 import de.neuland.jade4j.template.JadeTemplate;
+import de.neuland.jade4j.template.TemplateLoader;
 import fr.paris.lutece.util.html.HtmlTemplate;
 
 /**
@@ -53,10 +92,54 @@ public abstract class AbstractJadeTemplateService implements IJadeTemplateServic
 {
     /** Suffix of jade template files */
     private static final String JADE_SUFFIX = ".jade";
+    /** Maximum number of templates waiting for the default asynchronous executor */
+    private static final int ASYNC_QUEUE_CAPACITY = 1024;
+
+    private static final Logger _logger = Logger.getLogger( "lutece.jade" );
     
     private String _strDefaultPath;
     private JadeConfiguration _jadeConfiguration;
-    private DelegatingStringTemplateLoader _templateLoader;
+    private volatile SharedVariables _sharedVariables;
+    private StringTemplateCache _stringTemplateCache;
+    private FileTemplateCache _fileTemplateCache;
+    private int _nFileTemplateCacheMaxEntries = FileTemplateCache.DEFAULT_MAX_ENTRIES;
+    private boolean _bWatchTemplates;
+    private String _strPersistentCacheDirectory;
+    private TemplateWatcher _templateWatcher;
+    private int _nStringTemplateCacheMaxEntries = StringTemplateCache.DEFAULT_MAX_ENTRIES;
+    private long _lStringTemplateCacheMaxBytes = StringTemplateCache.DEFAULT_MAX_BYTES;
+    private boolean _bWarmUpOnInit;
+    private int _nWarmUpParallelism = Runtime.getRuntime(  ).availableProcessors(  );
+    private IJadeMetricsListener _metricsListener;
+    private List<String> _listTemplateDirectories = Collections.emptyList(  );
+    private List<String> _listClasspathTemplateRoots = Collections.emptyList(  );
+    private long _lTemplateResolutionTtl = CompositeTemplateLoader.DEFAULT_RESOLUTION_TTL;
+    private int _nTemplateResolutionCacheMaxEntries = ResolutionCache.DEFAULT_MAX_ENTRIES;
+    private final InMemoryTemplateRoot _inMemoryTemplates = new InMemoryTemplateRoot(  );
+    private CompositeTemplateLoader _compositeLoader;
+    private DirectoryTemplateRoot _defaultRoot;
+    private List<DirectoryTemplateRoot> _listDirectoryRoots;
+    private ConcurrentMap<String, String> _mapTemplateNames;
+    private Executor _batchExecutor;
+    private Executor _asyncExecutor;
+    private int _nAsyncParallelism = Runtime.getRuntime(  ).availableProcessors(  );
+    private volatile ExecutorService _defaultAsyncExecutor;
+    private long _lFragmentCacheMaxSize = JadeFragmentCache.DEFAULT_MAX_SIZE;
+    private JadeFragmentCache _fragmentCache;
+    private OutputBufferPool _outputBufferPool;
+    private OutputSizePredictor _outputSizePredictor;
+    private int _nBatchParallelism = Runtime.getRuntime(  ).availableProcessors(  );
+    private boolean _bStaticSegmentFolding;
+    private boolean _bCompactOutput;
+    private boolean _bCompiledExpressions;
+    private boolean _bPreEncodedSegments;
+    private boolean _bLocalizedTemplates;
+    private int _nMaxTemplateSourceSize;
+    private long _lMaxCompileTime;
+    private long _lMaxRenderTime;
+    private long _lFileTemplateCacheMaxWeight;
+    private LocalizedTemplateResolver _localizedTemplateResolver;
+    private final TemplateInvalidationLog _stringTemplateInvalidations = new TemplateInvalidationLog(  );
    
     /**
      * Get the absolute path from relative path
@@ -65,6 +148,311 @@ public abstract class AbstractJadeTemplateService implements IJadeTemplateServic
      */
     protected abstract String getAbsolutePathFromRelativePath( String strPath );
 
+    /**
+     * Set the listener notified of the template lookups, compilations and renderings,
+     * for example a {@link JadeMetrics}.
+     * Must be called before {@link #init(String)}
+     * @param metricsListener the metrics listener, or <code>null</code> to disable metrics
+     */
+    public void setMetricsListener( IJadeMetricsListener metricsListener )
+    {
+        _metricsListener = metricsListener;
+    }
+
+    /**
+     * Set additional template directories, searched in order after the default path
+     * for the templates not found in it, for example plugin directories.
+     * Must be called before {@link #init(String)}
+     * @param listDirectories the directory paths, relative like the default path
+     */
+    public void setTemplateDirectories( List<String> listDirectories )
+    {
+        _listTemplateDirectories = new ArrayList<String>( listDirectories );
+    }
+
+    /**
+     * Set classpath template locations, searched in order after the template
+     * directories, for example <code>templates/jade</code> in plugin jars.
+     * Must be called before {@link #init(String)}
+     * @param listRoots the resource paths of the templates
+     */
+    public void setClasspathTemplateRoots( List<String> listRoots )
+    {
+        _listClasspathTemplateRoots = new ArrayList<String>( listRoots );
+    }
+
+    /**
+     * Set how long the location of a template, or its absence, is remembered
+     * before the template directories and classpath are searched again.
+     * Must be called before {@link #init(String)}
+     * @param lMillis the time to live in milliseconds, negative to only search again
+     * when the template is invalidated
+     */
+    public void setTemplateResolutionTtl( long lMillis )
+    {
+        _lTemplateResolutionTtl = lMillis;
+    }
+
+    /**
+     * Set the maximum number of template names whose location, or absence, is remembered.
+     * It also bounds the remembered localized variants and the names of the templates
+     * loaded from a directory and a path. The least recently used ones are searched again.
+     * Must be called before {@link #init(String)}
+     * @param nMaxEntries the maximum number of remembered template locations
+     */
+    public void setTemplateResolutionCacheMaxEntries( int nMaxEntries )
+    {
+        _nTemplateResolutionCacheMaxEntries = nMaxEntries;
+    }
+
+    /**
+     * Register an in-memory template, overriding the template with the same name
+     * in the template directories and classpath
+     * @param strTemplatePath template path from the default template directory
+     * @param strContent the template content
+     */
+    public void putTemplate( String strTemplatePath, String strContent )
+    {
+        _inMemoryTemplates.put( strTemplatePath, strContent );
+        if ( _fileTemplateCache != null )
+        {
+            invalidate( strTemplatePath );
+        }
+    }
+
+    /**
+     * Unregister an in-memory template
+     * @param strTemplatePath template path from the default template directory
+     */
+    public void removeTemplate( String strTemplatePath )
+    {
+        _inMemoryTemplates.remove( strTemplatePath );
+        if ( _fileTemplateCache != null )
+        {
+            invalidate( strTemplatePath );
+        }
+    }
+
+    /**
+     * Set the executor processing the models of a batch concurrently, for example
+     * a virtual thread per task executor on the JDKs supporting them. The processed
+     * templates are still delivered in the order of the models.
+     * @param executor the executor, or <code>null</code> to process the models in the calling thread
+     */
+    public void setBatchExecutor( Executor executor )
+    {
+        _batchExecutor = executor;
+    }
+
+    /**
+     * Set the executor processing the templates loaded asynchronously. By default, the
+     * service starts its own pool of daemon threads, sized by {@link #setAsyncParallelism(int)},
+     * whose queue is bounded : once it is full, the calling thread processes the template.
+     * @param executor the executor, or <code>null</code> for the default pool
+     */
+    public void setAsyncExecutor( Executor executor )
+    {
+        _asyncExecutor = executor;
+    }
+
+    /**
+     * Set the number of threads of the default asynchronous executor
+     * @param nParallelism the number of threads processing the templates loaded asynchronously
+     */
+    public void setAsyncParallelism( int nParallelism )
+    {
+        _nAsyncParallelism = nParallelism;
+    }
+
+    /**
+     * Set the maximum number of models of a batch processed at the same time by the batch executor
+     * @param nParallelism the maximum number of models processed at the same time
+     */
+    public void setBatchParallelism( int nParallelism )
+    {
+        _nBatchParallelism = nParallelism;
+    }
+
+    /**
+     * Set the maximum total size of the rendered fragments kept in cache.
+     * Must be called before {@link #init(String)}
+     * @param lMaxSize the maximum size of the fragment cache, in characters
+     */
+    public void setFragmentCacheMaxSize( long lMaxSize )
+    {
+        _lFragmentCacheMaxSize = lMaxSize;
+    }
+
+    /**
+     * Set the maximum number of compiled file templates kept in cache.
+     * Must be called before {@link #init(String)}
+     * @param nMaxEntries the maximum number of cached file templates
+     */
+    public void setFileTemplateCacheMaxEntries( int nMaxEntries )
+    {
+        _nFileTemplateCacheMaxEntries = nMaxEntries;
+    }
+
+    /**
+     * Watch the default template path for changes instead of checking the
+     * modification date of the templates on each render.
+     * Must be called before {@link #init(String)}
+     * @param bWatchTemplates <code>true</code> to watch the templates
+     */
+    public void setWatchTemplates( boolean bWatchTemplates )
+    {
+        _bWatchTemplates = bWatchTemplates;
+    }
+
+    /**
+     * Keep the compiled file templates in a directory, so that they are not
+     * compiled again by the next JVM starts while they do not change.
+     * Must be called before {@link #init(String)}
+     * @param strDirectory the cache directory, or <code>null</code> to disable the persistent cache
+     */
+    public void setPersistentCacheDirectory( String strDirectory )
+    {
+        _strPersistentCacheDirectory = strDirectory;
+    }
+
+    /**
+     * Set the maximum number of compiled String templates kept in cache.
+     * Must be called before {@link #init(String)}
+     * @param nMaxEntries the maximum number of cached String templates
+     */
+    public void setStringTemplateCacheMaxEntries( int nMaxEntries )
+    {
+        _nStringTemplateCacheMaxEntries = nMaxEntries;
+    }
+
+    /**
+     * Set the maximum estimated memory held by the String templates kept in cache,
+     * sources and compiled templates. Must be called before {@link #init(String)}
+     * @param lMaxBytes the maximum estimated size of the cached String templates, in bytes
+     */
+    public void setStringTemplateCacheMaxBytes( long lMaxBytes )
+    {
+        _lStringTemplateCacheMaxBytes = lMaxBytes;
+    }
+
+    /**
+     * Enable the compilation of all the templates of the default path during {@link #init(String)}
+     * @param bWarmUpOnInit <code>true</code> to warm up the templates on init
+     */
+    public void setWarmUpOnInit( boolean bWarmUpOnInit )
+    {
+        _bWarmUpOnInit = bWarmUpOnInit;
+    }
+
+    /**
+     * Set the number of threads used to warm up the templates
+     * @param nParallelism the number of threads used to compile the templates
+     */
+    public void setWarmUpParallelism( int nParallelism )
+    {
+        _nWarmUpParallelism = nParallelism;
+    }
+
+    /**
+     * Enable the folding of the static parts of the compiled templates : contiguous nodes
+     * that do not depend on the model are rendered once at compile time into a single chunk.
+     * The output is the same, templates rendered with pretty print are not folded.
+     * @param bStaticSegmentFolding <code>true</code> to fold the static parts of the templates
+     */
+    public void setStaticSegmentFolding( boolean bStaticSegmentFolding )
+    {
+        _bStaticSegmentFolding = bStaticSegmentFolding;
+    }
+
+    /**
+     * Enable the compact output : the templates are compiled without pretty print, comments
+     * nor insignificant whitespace, instead of minifying the rendered pages. Conditional comments
+     * and the content of the <code>pre</code>, <code>textarea</code>, <code>script</code> and
+     * <code>style</code> tags are kept as is.
+     * @param bCompactOutput <code>true</code> to compact the output of the templates
+     */
+    public void setCompactOutput( boolean bCompactOutput )
+    {
+        _bCompactOutput = bCompactOutput;
+    }
+
+    /**
+     * Enable the compiled expressions : the interpolations and buffered code of the templates
+     * made of a property chain, like <code>#{user.name}</code>, are resolved with cached accessors
+     * instead of the jade expression evaluator, which remains used for the other expressions.
+     * Must be called before {@link #init(String)}
+     * @param bCompiledExpressions <code>true</code> to compile the expressions of the templates
+     */
+    public void setCompiledExpressions( boolean bCompiledExpressions )
+    {
+        _bCompiledExpressions = bCompiledExpressions;
+    }
+
+    /**
+     * Enable the pre-encoded segments : the literal parts of the templates, like the static
+     * segments produced by {@link #setStaticSegmentFolding(boolean)}, are encoded in UTF-8 at
+     * compile time, so rendering to an output stream only encodes the dynamic values.
+     * Must be called before {@link #init(String)}
+     * @param bPreEncodedSegments <code>true</code> to keep the literal parts of the templates encoded
+     */
+    public void setPreEncodedSegments( boolean bPreEncodedSegments )
+    {
+        _bPreEncodedSegments = bPreEncodedSegments;
+    }
+
+    /**
+     * Enable the localized variants of the file templates : for the <code>fr_FR</code> locale,
+     * <code>page.jade</code> is served by <code>page_fr_FR.jade</code>, <code>page_fr.jade</code>
+     * or <code>page.jade</code>, the first one existing. Included and extended templates are not localized.
+     * Must be called before {@link #init(String)}
+     * @param bLocalizedTemplates <code>true</code> to resolve the templates according to the locale
+     */
+    public void setLocalizedTemplates( boolean bLocalizedTemplates )
+    {
+        _bLocalizedTemplates = bLocalizedTemplates;
+    }
+
+    /**
+     * Set the maximum size of a template source, String template or file read during a compilation.
+     * Larger templates fail with a {@link JadeLimitExceededException}
+     * @param nMaxChars the maximum number of characters, or 0 for no limit
+     */
+    public void setMaxTemplateSourceSize( int nMaxChars )
+    {
+        _nMaxTemplateSourceSize = nMaxChars;
+    }
+
+    /**
+     * Set the maximum duration of a template compilation, checked as the template sources are read.
+     * Slower compilations fail with a {@link JadeLimitExceededException}
+     * @param lMillis the maximum duration in milliseconds, or 0 for no limit
+     */
+    public void setMaxCompileTime( long lMillis )
+    {
+        _lMaxCompileTime = lMillis;
+    }
+
+    /**
+     * Set the maximum duration of a template rendering, checked as the output is written.
+     * Slower renderings fail with a {@link JadeLimitExceededException}
+     * @param lMillis the maximum duration in milliseconds, or 0 for no limit
+     */
+    public void setMaxRenderTime( long lMillis )
+    {
+        _lMaxRenderTime = lMillis;
+    }
+
+    /**
+     * Bound the file template cache by the estimated memory held by the compiled templates
+     * instead of their number. Must be called before {@link #init(String)}
+     * @param lMaxBytes the maximum estimated size of the compiled templates in bytes,
+     * or 0 to bound the number of templates
+     */
+    public void setFileTemplateCacheMaxWeight( long lMaxBytes )
+    {
+        _lFileTemplateCacheMaxWeight = lMaxBytes;
+    }
+
     
     @Override
     public void init( String strDefaultPath )
@@ -81,8 +469,118 @@ public abstract class AbstractJadeTemplateService implements IJadeTemplateServic
             }
         }
         _jadeConfiguration = new JadeConfiguration(  );
-        _templateLoader = new DelegatingStringTemplateLoader( new FileTemplateLoader( getAbsolutePathFromRelativePath( _strDefaultPath ), "UTF-8" ) );
-        _jadeConfiguration.setTemplateLoader( _templateLoader );
+        _defaultRoot = new DirectoryTemplateRoot( getAbsolutePathFromRelativePath( _strDefaultPath ) );
+        _listDirectoryRoots = new ArrayList<DirectoryTemplateRoot>(  );
+        _listDirectoryRoots.add( _defaultRoot );
+        for ( String strDirectory : _listTemplateDirectories )
+        {
+            _listDirectoryRoots.add( new DirectoryTemplateRoot( getAbsolutePathFromRelativePath( strDirectory ) ) );
+        }
+        List<TemplateRoot> listRoots = new ArrayList<TemplateRoot>(  );
+        listRoots.add( _inMemoryTemplates );
+        listRoots.addAll( _listDirectoryRoots );
+        for ( String strClasspathRoot : _listClasspathTemplateRoots )
+        {
+            listRoots.add( new ClasspathTemplateRoot( getClass(  ).getClassLoader(  ), strClasspathRoot ) );
+        }
+        _compositeLoader = new CompositeTemplateLoader( listRoots, _lTemplateResolutionTtl, _nTemplateResolutionCacheMaxEntries );
+        _mapTemplateNames = new ConcurrentLinkedHashMap.Builder<String, String>(  ).maximumWeightedCapacity( Math.max(
+                    _nTemplateResolutionCacheMaxEntries, 1 ) ).build(  );
+        _stringTemplateInvalidations.invalidateAll(  );
+        _localizedTemplateResolver = _bLocalizedTemplates ? new LocalizedTemplateResolver( _compositeLoader, _lTemplateResolutionTtl,
+                _nTemplateResolutionCacheMaxEntries ) : null;
+        _jadeConfiguration.setTemplateLoader( _compositeLoader );
+        _fragmentCache = new JadeFragmentCache( this, _lFragmentCacheMaxSize );
+        _outputBufferPool = new OutputBufferPool( 2 * Runtime.getRuntime(  ).availableProcessors(  ) );
+        _outputSizePredictor = new OutputSizePredictor( _nFileTemplateCacheMaxEntries );
+        SharedVariables sharedVariables = new SharedVariables(  );
+        sharedVariables.put( JadeFragmentCache.SHARED_VARIABLE, _fragmentCache );
+        _sharedVariables = sharedVariables;
+        _stringTemplateCache = new StringTemplateCache( _nStringTemplateCacheMaxEntries, _lStringTemplateCacheMaxBytes );
+        TemplateCompiler compiler = new TemplateCompiler(  )
+            {
+                @Override
+                public JadeTemplate compile( String strName, TemplateLoader templateLoader ) throws IOException
+                {
+                    return compileTemplate( strName, templateLoader );
+                }
+            };
+        if ( _strPersistentCacheDirectory != null )
+        {
+            try
+            {
+                String strOptions = ( _bCompactOutput ? "+compact" : "" ) + ( _bStaticSegmentFolding ? "+folding" : "" );
+                compiler = new PersistentTemplateCache( Paths.get( _strPersistentCacheDirectory ), _jadeConfiguration, compiler,
+                        strOptions );
+            } catch ( IOException e )
+            {
+                _logger.warn( "Unable to use " + _strPersistentCacheDirectory + " as jade template cache directory", e );
+            }
+        }
+        if ( _bCompiledExpressions || _bPreEncodedSegments )
+        {
+            // bound after the persistent cache, which stores the templates as parsed by jade
+            final TemplateCompiler parser = compiler;
+            compiler = new TemplateCompiler(  )
+                {
+                    @Override
+                    public JadeTemplate compile( String strName, TemplateLoader templateLoader ) throws IOException
+                    {
+                        JadeTemplate template = parser.compile( strName, templateLoader );
+                        bind( template );
+                        return template;
+                    }
+                };
+        }
+        _fileTemplateCache = new FileTemplateCache( _compositeLoader, compiler, _nFileTemplateCacheMaxEntries,
+                _lFileTemplateCacheMaxWeight, _metricsListener );
+        closeTemplateWatcher(  );
+        if ( _bWatchTemplates )
+        {
+            try
+            {
+                _templateWatcher = new TemplateWatcher( Paths.get( getAbsolutePathFromRelativePath( _strDefaultPath ) ), this );
+                _templateWatcher.start(  );
+            } catch ( IOException e )
+            {
+                _logger.warn( "Unable to watch jade templates, falling back to modification date checks", e );
+            }
+        }
+        if ( _bWarmUpOnInit )
+        {
+            JadeWarmUpReport report = warmUp(  );
+            _logger.info( report );
+            for ( Map.Entry<String, Exception> failure : report.getFailures(  ).entrySet(  ) )
+            {
+                _logger.warn( "Unable to compile jade template " + failure.getKey(  ), failure.getValue(  ) );
+            }
+        }
+    }
+
+    @Override
+    public void close(  )
+    {
+        closeTemplateWatcher(  );
+        synchronized ( this )
+        {
+            if ( _defaultAsyncExecutor != null )
+            {
+                _defaultAsyncExecutor.shutdown(  );
+                _defaultAsyncExecutor = null;
+            }
+        }
+    }
+
+    /**
+     * Stop the template watcher, if any
+     */
+    private void closeTemplateWatcher(  )
+    {
+        if ( _templateWatcher != null )
+        {
+            _templateWatcher.close(  );
+            _templateWatcher = null;
+        }
     }
     
     @Override
@@ -94,11 +592,12 @@ public abstract class AbstractJadeTemplateService implements IJadeTemplateServic
     @Override
     public void setSharedVariable( String name, Object obj )
     {
-        if ( _jadeConfiguration == null)
+        SharedVariables sharedVariables = _sharedVariables;
+        if ( sharedVariables == null )
         {
             throw new IllegalStateException( "init must be called first" );
         }
-        _jadeConfiguration.getSharedVariables(  ).put( name, obj );
+        sharedVariables.put( name, obj );
     }
     
     @Override
@@ -106,19 +605,137 @@ public abstract class AbstractJadeTemplateService implements IJadeTemplateServic
     {
         try
         {
-            String strTemplatePath;
-            if ( _strDefaultPath.equals( strPath ) )
+            String strTemplatePath = getTemplatePath( strPath, strTemplate, locale );
+            JadeTemplate template = getTemplate( strTemplatePath );
+
+            return new HtmlTemplate( renderToString( strTemplatePath, _outputSizePredictor.getEstimate( strTemplatePath ), template,
+                    getJadeModelFromFreemarkerModel( model ) ) );
+        } catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    @Override
+    public CompletableFuture<HtmlTemplate> loadTemplateAsync( final String strPath, final String strTemplate,
+        final Locale locale, final Object model )
+    {
+        return CompletableFuture.supplyAsync( new Supplier<HtmlTemplate>(  )
             {
-                strTemplatePath = strTemplate;
-            } else
+                @Override
+                public HtmlTemplate get(  )
+                {
+                    return loadTemplate( strPath, strTemplate, locale, model );
+                }
+            }, getAsyncExecutor(  ) );
+    }
+
+    @Override
+    public CompletableFuture<HtmlTemplate> loadTemplateAsync( final String templateData, final Locale locale,
+        final Object model )
+    {
+        return CompletableFuture.supplyAsync( new Supplier<HtmlTemplate>(  )
             {
-                strTemplatePath = getAbsolutePathFromRelativePath( new File( strPath, strTemplate ).getPath(  ) );
+                @Override
+                public HtmlTemplate get(  )
+                {
+                    return loadTemplate( templateData, locale, model );
+                }
+            }, getAsyncExecutor(  ) );
+    }
+
+    /**
+     * Get the executor processing the templates loaded asynchronously
+     * @return the configured executor, or the default pool, started on first use
+     */
+    private Executor getAsyncExecutor(  )
+    {
+        if ( _asyncExecutor != null )
+        {
+            return _asyncExecutor;
+        }
+        ExecutorService executor = _defaultAsyncExecutor;
+        if ( executor == null )
+        {
+            synchronized ( this )
+            {
+                executor = _defaultAsyncExecutor;
+                if ( executor == null )
+                {
+                    final AtomicInteger nThreads = new AtomicInteger(  );
+                    int nParallelism = Math.max( 1, _nAsyncParallelism );
+                    executor = new ThreadPoolExecutor( nParallelism, nParallelism, 0, TimeUnit.MILLISECONDS,
+                            new ArrayBlockingQueue<Runnable>( ASYNC_QUEUE_CAPACITY ), new ThreadFactory(  )
+                            {
+                                @Override
+                                public Thread newThread( Runnable runnable )
+                                {
+                                    Thread thread = new Thread( runnable, "jade-async-" + nThreads.incrementAndGet(  ) );
+                                    thread.setDaemon( true );
+                                    return thread;
+                                }
+                            }, new ThreadPoolExecutor.CallerRunsPolicy(  ) );
+                    _defaultAsyncExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    @Override
+    public List<HtmlTemplate> loadTemplates( List<JadeTemplateRequest> listRequests )
+    {
+        List<CompletableFuture<HtmlTemplate>> listFutures = new ArrayList<CompletableFuture<HtmlTemplate>>( listRequests.size(  ) );
+        for ( JadeTemplateRequest request : listRequests.subList( Math.min( 1, listRequests.size(  ) ), listRequests.size(  ) ) )
+        {
+            listFutures.add( loadTemplateAsync( request.getPath(  ), request.getTemplate(  ), request.getLocale(  ), request.getModel(  ) ) );
+        }
+        List<HtmlTemplate> listTemplates = new ArrayList<HtmlTemplate>( listRequests.size(  ) );
+        try
+        {
+            if ( !listRequests.isEmpty(  ) )
+            {
+                // the calling thread processes the first template instead of waiting idle
+                JadeTemplateRequest first = listRequests.get( 0 );
+                listTemplates.add( loadTemplate( first.getPath(  ), first.getTemplate(  ), first.getLocale(  ), first.getModel(  ) ) );
+            }
+            for ( CompletableFuture<HtmlTemplate> future : listFutures )
+            {
+                listTemplates.add( future.join(  ) );
+            }
+        } catch ( CompletionException e )
+        {
+            Throwable cause = e.getCause(  );
+            if ( cause instanceof RuntimeException )
+            {
+                throw ( RuntimeException ) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw ( Error ) cause;
+            }
+            throw e;
+        } finally
+        {
+            for ( CompletableFuture<HtmlTemplate> future : listFutures )
+            {
+                future.cancel( false );
             }
-            JadeTemplate template = _jadeConfiguration.getTemplate( strTemplatePath );
+        }
+        return listTemplates;
+    }
+
+    @Override
+    public void render( String strPath, String strTemplate, Locale locale, Object model, Writer out )
+    {
+        try
+        {
+            String strTemplatePath = getTemplatePath( strPath, strTemplate, locale );
+            JadeTemplate template = getTemplate( strTemplatePath );
             
             Map<String, Object> rootModel = getJadeModelFromFreemarkerModel( model );
 
-            return new HtmlTemplate( _jadeConfiguration.renderTemplate( template, rootModel ) );
+            renderToWriter( strTemplatePath, template, rootModel, out );
 
         } catch ( IOException e )
         {
@@ -127,40 +744,617 @@ public abstract class AbstractJadeTemplateService implements IJadeTemplateServic
     }
 
 
-    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    /**
+     * Render a file template for the fragment cache
+     * @param strTemplatePath template path from the default template directory
+     * @param model the model
+     * @return the rendered template
+     */
+    String renderFragment( String strTemplatePath, Map<String, Object> model )
+    {
+        try
+        {
+            return renderToString( strTemplatePath, _outputSizePredictor.getEstimate( strTemplatePath ), getTemplate( strTemplatePath ), model );
+        } catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    @Override
+    public void renderBatch( String strPath, String strTemplate, Locale locale, Iterable<?> models, IJadeBatchSink sink )
+    {
+        try
+        {
+            String strTemplatePath = getTemplatePath( strPath, strTemplate, locale );
+            JadeTemplate template = getTemplate( strTemplatePath );
+            if ( _batchExecutor == null )
+            {
+                OutputBuffer out = _outputBufferPool.acquire( _outputSizePredictor.predict( strTemplatePath ) );
+                try
+                {
+                    for ( Object model : models )
+                    {
+                        renderTemplate( strTemplatePath, template, getJadeModelFromFreemarkerModel( model ), out, null );
+                        _outputSizePredictor.record( strTemplatePath, out.length(  ) );
+                        sink.write( model, out.getContent(  ) );
+                        out.reset(  );
+                    }
+                } finally
+                {
+                    _outputBufferPool.release( out );
+                }
+            } else
+            {
+                renderBatchConcurrently( strTemplatePath, template, models, sink );
+            }
+        } catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    /**
+     * Process the models of a batch with the batch executor, keeping at most
+     * the batch parallelism of models in progress
+     * @param strTemplatePath the template path
+     * @param template the compiled template
+     * @param models the models
+     * @param sink the receiver of the processed templates
+     * @throws IOException if the sink fails
+     */
+    private void renderBatchConcurrently( final String strTemplatePath, final JadeTemplate template, Iterable<?> models,
+        IJadeBatchSink sink ) throws IOException
+    {
+        // models may be null, unlike the elements of an ArrayDeque
+        Deque<Object> pendingModels = new LinkedList<Object>(  );
+        Deque<Future<OutputBuffer>> pendingOutputs = new ArrayDeque<Future<OutputBuffer>>(  );
+        try
+        {
+            for ( final Object model : models )
+            {
+                if ( pendingOutputs.size(  ) >= Math.max( 1, _nBatchParallelism ) )
+                {
+                    writeBatchOutput( strTemplatePath, pendingModels.poll(  ), pendingOutputs.poll(  ), sink );
+                }
+                final OutputBuffer out = _outputBufferPool.acquire( _outputSizePredictor.predict( strTemplatePath ) );
+                FutureTask<OutputBuffer> task = new FutureTask<OutputBuffer>( new Callable<OutputBuffer>(  )
+                        {
+                            @Override
+                            public OutputBuffer call(  )
+                            {
+                                renderTemplate( strTemplatePath, template, getJadeModelFromFreemarkerModel( model ), out, null );
+                                return out;
+                            }
+                        } );
+                _batchExecutor.execute( task );
+                pendingModels.add( model );
+                pendingOutputs.add( task );
+            }
+            while ( !pendingOutputs.isEmpty(  ) )
+            {
+                writeBatchOutput( strTemplatePath, pendingModels.poll(  ), pendingOutputs.poll(  ), sink );
+            }
+        } finally
+        {
+            for ( Future<OutputBuffer> output : pendingOutputs )
+            {
+                output.cancel( true );
+            }
+        }
+    }
+
+    /**
+     * Wait for a model of a batch to be processed and write it to the sink
+     * @param strTemplatePath the template path
+     * @param model the model
+     * @param output the processing of the model
+     * @param sink the receiver of the processed templates
+     * @throws IOException if the sink fails
+     */
+    private void writeBatchOutput( String strTemplatePath, Object model, Future<OutputBuffer> output, IJadeBatchSink sink )
+        throws IOException
+    {
+        OutputBuffer out;
+        try
+        {
+            out = output.get(  );
+        } catch ( InterruptedException e )
+        {
+            Thread.currentThread(  ).interrupt(  );
+            throw new RuntimeException( e );
+        } catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause(  );
+            if ( cause instanceof RuntimeException )
+            {
+                throw ( RuntimeException ) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw ( Error ) cause;
+            }
+            throw new RuntimeException( cause );
+        }
+        try
+        {
+            _outputSizePredictor.record( strTemplatePath, out.length(  ) );
+            sink.write( model, out.getContent(  ) );
+        } finally
+        {
+            _outputBufferPool.release( out );
+        }
+    }
+
+    /**
+     * Render a compiled template to a String, in a pooled buffer preallocated
+     * from the size of the previous renderings
+     * @param strName the template name
+     * @param outputSize the output size estimate of the template
+     * @param template the compiled template
+     * @param model the model
+     * @return the rendered template
+     */
+    private String renderToString( String strName, OutputSizeEstimate outputSize, JadeTemplate template, Map<String, Object> model )
+    {
+        OutputBuffer out = _outputBufferPool.acquire( outputSize.predict(  ) );
+        try
+        {
+            renderTemplate( strName, template, model, out, null );
+            outputSize.record( out.length(  ) );
+            return out.toString(  );
+        } finally
+        {
+            _outputBufferPool.release( out );
+        }
+    }
+
+    @SuppressWarnings( "unchecked" )
     private Map<String, Object> getJadeModelFromFreemarkerModel( Object model )
     {
         Map<String, Object> rootModel;
         if ( model instanceof Map<?, ?> )
         {
             rootModel = ( Map<String, Object> ) model;
+        } else if ( model == null )
+        {
+            rootModel = Collections.emptyMap(  );
         } else {
-            rootModel = ( Map ) new BeanMap( model );
+            rootModel = new BeanModelMap( model );
         }
         return rootModel;
     }
     
     @Override
     public HtmlTemplate loadTemplate( String templateData, Locale locale, Object model )
+    {
+        CompiledStringTemplate compiled = getCompiledStringTemplate( templateData );
+
+        return new HtmlTemplate( renderToString( IJadeMetricsListener.STRING_TEMPLATE, compiled.getOutputSize(  ), compiled.getTemplate(  ),
+                getJadeModelFromFreemarkerModel( model ) ) );
+    }
+
+    @Override
+    public void render( String templateData, Locale locale, Object model, Writer out )
+    {
+        JadeTemplate template = getCompiledStringTemplate( templateData ).getTemplate(  );
+        Map<String, Object> rootModel = getJadeModelFromFreemarkerModel( model );
+
+        renderToWriter( IJadeMetricsListener.STRING_TEMPLATE, template, rootModel, out );
+    }
+
+    @Override
+    public IJadeCompiledTemplate compile( String templateData )
+    {
+        final CompiledStringTemplate compiled = getCompiledStringTemplate( templateData );
+
+        return new IJadeCompiledTemplate(  )
+            {
+                @Override
+                public boolean isValid(  )
+                {
+                    return !_stringTemplateInvalidations.isInvalidated( compiled );
+                }
+
+                @Override
+                public void render( Object model, Writer out )
+                {
+                    renderToWriter( IJadeMetricsListener.STRING_TEMPLATE, compiled.getTemplate(  ), getJadeModelFromFreemarkerModel( model ), out );
+                }
+            };
+    }
+
+    @Override
+    public void render( String strPath, String strTemplate, Locale locale, Object model, OutputStream out )
+    {
+        Utf8OutputWriter writer = new Utf8OutputWriter( out );
+        render( strPath, strTemplate, locale, model, writer );
+        close( writer );
+    }
+
+    @Override
+    public void render( String templateData, Locale locale, Object model, OutputStream out )
+    {
+        Utf8OutputWriter writer = new Utf8OutputWriter( out );
+        render( templateData, locale, model, writer );
+        close( writer );
+    }
+
+    /**
+     * Write the remaining output of a rendering to its stream, which is left open
+     * @param writer the writer encoding the output
+     * @throws UncheckedIOException if the stream fails
+     */
+    private static void close( Utf8OutputWriter writer )
     {
         try
         {
-            _templateLoader.setStringTemplate( templateData );
-            JadeTemplate template = _jadeConfiguration.getTemplate( DelegatingStringTemplateLoader.TEMPLATE_NAME );
-            Map<String, Object> rootModel = getJadeModelFromFreemarkerModel( model );
-
-            return new HtmlTemplate( _jadeConfiguration.renderTemplate( template, rootModel ) );
+            writer.close(  );
+        } catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+    }
 
+    /**
+     * Get a compiled String template, with the output size estimate of its renderings
+     * @param templateData the template
+     * @return the compiled template
+     */
+    private CompiledStringTemplate getCompiledStringTemplate( String templateData )
+    {
+        try
+        {
+            if ( _nMaxTemplateSourceSize > 0 && templateData.length(  ) > _nMaxTemplateSourceSize )
+            {
+                throw new JadeLimitExceededException( "Jade String template exceeds " + _nMaxTemplateSourceSize + " characters" );
+            }
+            long lStart = ( _metricsListener == null ) ? 0 : System.nanoTime(  );
+            CompiledStringTemplate compiled = _stringTemplateCache.get( templateData );
+            if ( compiled != null && _stringTemplateInvalidations.isInvalidated( compiled ) )
+            {
+                // cached while an included template was invalidated
+                _stringTemplateCache.remove( templateData, compiled );
+                compiled = null;
+            }
+            boolean bCacheHit = compiled != null;
+            if ( !bCacheHit )
+            {
+                compiled = compileStringTemplate( templateData );
+                if ( !_stringTemplateInvalidations.isInvalidated( compiled ) )
+                {
+                    // not cached if an included template was invalidated during the compilation
+                    _stringTemplateCache.put( templateData, compiled );
+                }
+            }
+            if ( _metricsListener != null )
+            {
+                _metricsListener.onLookup( IJadeMetricsListener.STRING_TEMPLATE, bCacheHit, System.nanoTime(  ) - lStart );
+            }
+            return compiled;
         } catch ( IOException e )
         {
             throw new RuntimeException( e );
         }
     }
     
+    /**
+     * Get a compiled file template
+     * @param strTemplatePath the template path
+     * @return the compiled template
+     * @throws IOException if the template cannot be read
+     */
+    private JadeTemplate getTemplate( String strTemplatePath ) throws IOException
+    {
+        boolean bWatched = false;
+        if ( _templateWatcher != null && _templateWatcher.covers( strTemplatePath ) )
+        {
+            // in-memory templates are invalidated when they change
+            TemplateRoot root = _compositeLoader.resolve( strTemplatePath );
+            bWatched = root == _defaultRoot || root == _inMemoryTemplates;
+        }
+        return _fileTemplateCache.get( strTemplatePath, !bWatched );
+    }
+
+    /**
+     * Get the name of the variant of a template serving a locale
+     * @param strPath the template directory
+     * @param strTemplate the template file, relative to the directory
+     * @param locale the locale
+     * @return the template path, localized if the localized templates are enabled
+     */
+    private String getTemplatePath( String strPath, String strTemplate, Locale locale )
+    {
+        String strTemplatePath = getTemplatePath( strPath, strTemplate );
+        return ( _localizedTemplateResolver == null ) ? strTemplatePath : _localizedTemplateResolver.resolve( strTemplatePath, locale );
+    }
+
+    /**
+     * Get the name of a template for the template loader
+     * @param strPath the template directory
+     * @param strTemplate the template file, relative to the directory
+     * @return the template path relative to the template directory holding it, or its absolute path
+     */
+    private String getTemplatePath( String strPath, String strTemplate )
+    {
+        if ( _strDefaultPath.equals( strPath ) )
+        {
+            return strTemplate;
+        }
+        String strKey = strPath + '\0' + strTemplate;
+        String strTemplatePath = _mapTemplateNames.get( strKey );
+        if ( strTemplatePath == null )
+        {
+            Path file = Paths.get( getAbsolutePathFromRelativePath( new File( strPath, strTemplate ).getPath(  ) ) ).toAbsolutePath(  ).normalize(  );
+            strTemplatePath = file.toString(  );
+            for ( DirectoryTemplateRoot root : _listDirectoryRoots )
+            {
+                Path directory = Paths.get( root.getBasePath(  ) ).toAbsolutePath(  ).normalize(  );
+                if ( file.startsWith( directory ) )
+                {
+                    strTemplatePath = directory.relativize( file ).toString(  ).replace( File.separatorChar, '/' );
+                    break;
+                }
+            }
+            _mapTemplateNames.put( strKey, strTemplatePath );
+        }
+        return strTemplatePath;
+    }
+
+    /**
+     * Compile a String template
+     * @param templateData the template
+     * @return the compiled template, with the templates it includes
+     * @throws IOException if an included template cannot be read
+     */
+    private CompiledStringTemplate compileStringTemplate( String templateData ) throws IOException
+    {
+        // the generation is read first, so that a template changed meanwhile is reported invalid
+        long lGeneration = _stringTemplateInvalidations.getGeneration(  );
+        RecordingTemplateLoader templateLoader = new RecordingTemplateLoader( new DelegatingStringTemplateLoader( templateData, _compositeLoader ) );
+        JadeTemplate template = compileTemplate( DelegatingStringTemplateLoader.TEMPLATE_NAME, templateLoader );
+        bind( template );
+        Set<String> setDependencies = new HashSet<String>( templateLoader.getNames(  ) );
+        setDependencies.remove( DelegatingStringTemplateLoader.TEMPLATE_NAME );
+        return new CompiledStringTemplate( templateData, template, setDependencies, lGeneration );
+    }
+
+    /**
+     * Replace the nodes of a compiled template by their compiled expressions and
+     * pre-encoded segments versions, when enabled
+     * @param template the compiled template
+     */
+    private void bind( JadeTemplate template )
+    {
+        if ( _bCompiledExpressions )
+        {
+            ExpressionBinder.bind( template );
+        }
+        if ( _bPreEncodedSegments )
+        {
+            SegmentEncoder.encode( template );
+        }
+    }
+
+    /**
+     * Compile a template, bypassing the jade configuration cache
+     * @param strName the template name
+     * @param templateLoader the loader used to read the template and the templates it includes or extends
+     * @return the compiled template
+     * @throws IOException if the template cannot be read
+     */
+    private JadeTemplate compileTemplate( String strName, TemplateLoader templateLoader ) throws IOException
+    {
+        long lStart = ( _metricsListener == null ) ? 0 : System.nanoTime(  );
+        TemplateLoader sourceLoader = templateLoader;
+        if ( _nMaxTemplateSourceSize > 0 || _lMaxCompileTime > 0 )
+        {
+            sourceLoader = new LimitedTemplateLoader( templateLoader, _nMaxTemplateSourceSize, _lMaxCompileTime );
+        }
+        Node rootNode = new Parser( strName, sourceLoader ).parse(  );
+        JadeTemplate template = new JadeTemplate(  );
+        template.setTemplateLoader( _compositeLoader );
+        template.setRootNode( rootNode );
+        template.setPrettyPrint( _jadeConfiguration.isPrettyPrint(  ) );
+        template.setMode( _jadeConfiguration.getMode(  ) );
+        if ( _bCompactOutput )
+        {
+            TemplateCompactor.compact( template );
+        }
+        if ( _bStaticSegmentFolding )
+        {
+            StaticSegmentFolder.fold( template );
+        }
+        if ( _metricsListener != null )
+        {
+            _metricsListener.onCompile( strName, System.nanoTime(  ) - lStart );
+        }
+        return template;
+    }
+
+    /**
+     * Render a compiled template to a writer of the caller, reporting the first
+     * IOException of the writer once the rendering is over
+     * @param strName the template name
+     * @param template the compiled template
+     * @param model the model
+     * @param out the writer to render to
+     * @throws UncheckedIOException if the writer fails
+     */
+    private void renderToWriter( String strName, JadeTemplate template, Map<String, Object> model, Writer out )
+    {
+        ErrorTrackingWriter trackingOut = new ErrorTrackingWriter( out );
+        renderTemplate( strName, template, model, trackingOut, ( out instanceof Utf8OutputWriter ) ? ( Utf8OutputWriter ) out : null );
+        trackingOut.checkError(  );
+    }
+
+    /**
+     * Render a compiled template, reporting the rendering to the metrics listener
+     * and enforcing the maximum rendering time. The model is layered over the
+     * shared variables snapshot instead of being merged with a copy of them.
+     * @param strName the template name
+     * @param template the compiled template
+     * @param model the model
+     * @param out the writer to render to
+     * @param utf8Output the UTF-8 encoder at the end of the output, or <code>null</code>
+     */
+    private void renderTemplate( String strName, JadeTemplate template, Map<String, Object> model, Writer out,
+        Utf8OutputWriter utf8Output )
+    {
+        Writer limitedOut = ( _lMaxRenderTime > 0 ) ? new DeadlineWriter( out, strName, _lMaxRenderTime ) : out;
+        JadeModel jadeModel = new LayeredJadeModel( ( model == null ) ? Collections.<String, Object>emptyMap(  ) : model,
+                _sharedVariables.getSnapshot(  ), utf8Output );
+        if ( _metricsListener == null )
+        {
+            template.process( jadeModel, limitedOut );
+            return;
+        }
+        long lStart = System.nanoTime(  );
+        CountingWriter countingOut = new CountingWriter( limitedOut );
+        template.process( jadeModel, countingOut );
+        _metricsListener.onRender( strName, System.nanoTime(  ) - lStart, countingOut.getCount(  ) );
+    }
+
+    @Override
+    public IJadeFragmentCache getFragmentCache(  )
+    {
+        return _fragmentCache;
+    }
+
+    @Override
+    public JadeWarmUpReport warmUp(  )
+    {
+        long lStart = System.currentTimeMillis(  );
+        Map<String, Exception> mapFailures = new HashMap<String, Exception>(  );
+        List<String> listTemplates = listTemplates(  );
+        List<Callable<String>> tasks = new ArrayList<Callable<String>>( listTemplates.size(  ) );
+        for ( final String strTemplate : listTemplates )
+        {
+            tasks.add( new Callable<String>(  )
+                {
+                    @Override
+                    public String call(  ) throws Exception
+                    {
+                        getTemplate( strTemplate );
+                        return strTemplate;
+                    }
+                } );
+        }
+
+        int nCompiled = 0;
+        if ( !tasks.isEmpty(  ) )
+        {
+            ForkJoinPool pool = new ForkJoinPool( Math.max( 1, Math.min( _nWarmUpParallelism, tasks.size(  ) ) ) );
+            try
+            {
+                List<Future<String>> results = pool.invokeAll( tasks );
+                for ( int i = 0; i < results.size(  ); i++ )
+                {
+                    try
+                    {
+                        results.get( i ).get(  );
+                        nCompiled++;
+                    } catch ( ExecutionException e )
+                    {
+                        Throwable cause = e.getCause(  );
+                        mapFailures.put( listTemplates.get( i ), cause instanceof Exception ? ( Exception ) cause : e );
+                    }
+                }
+            } catch ( InterruptedException e )
+            {
+                Thread.currentThread(  ).interrupt(  );
+            } finally
+            {
+                pool.shutdown(  );
+            }
+        }
+
+        return new JadeWarmUpReport( nCompiled, mapFailures, System.currentTimeMillis(  ) - lStart );
+    }
+
+    /**
+     * List the jade templates of the default path
+     * @return the template names, relative to the default path
+     */
+    private List<String> listTemplates(  )
+    {
+        final List<String> listTemplates = new ArrayList<String>(  );
+        final Path root = Paths.get( getAbsolutePathFromRelativePath( _strDefaultPath ) );
+        if ( !Files.isDirectory( root ) )
+        {
+            return listTemplates;
+        }
+        try
+        {
+            Files.walkFileTree( root, new SimpleFileVisitor<Path>(  )
+                {
+                    @Override
+                    public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+                    {
+                        if ( canHandle( file.getFileName(  ).toString(  ) ) )
+                        {
+                            listTemplates.add( root.relativize( file ).toString(  ).replace( File.separatorChar, '/' ) );
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                } );
+        } catch ( IOException e )
+        {
+            _logger.warn( "Unable to list jade templates of " + root, e );
+        }
+        return listTemplates;
+    }
+
+    @Override
+    public void invalidate( String strTemplatePath )
+    {
+        _compositeLoader.invalidate( strTemplatePath );
+        _fileTemplateCache.invalidate( strTemplatePath );
+        // also discards the String templates reading it while being compiled, and reports
+        // the ones kept by callers invalid
+        _stringTemplateInvalidations.invalidate( strTemplatePath );
+        _stringTemplateCache.invalidate( strTemplatePath );
+        if ( _localizedTemplateResolver != null )
+        {
+            _localizedTemplateResolver.invalidate( strTemplatePath );
+        }
+    }
+
+    /**
+     * Get the templates a compiled template depends on
+     * @param strTemplatePath template path from the default template directory
+     * @return the paths of the templates included or extended by the template, directly or not
+     */
+    public Set<String> getTemplateDependencies( String strTemplatePath )
+    {
+        return _fileTemplateCache.getDependencies( strTemplatePath );
+    }
+
+    /**
+     * Get the compiled templates depending on a template
+     * @param strTemplatePath template path from the default template directory
+     * @return the paths of the templates including or extending the template, directly or not
+     */
+    public Set<String> getTemplateDependents( String strTemplatePath )
+    {
+        return _fileTemplateCache.getDependents( strTemplatePath );
+    }
+
     @Override
     public void resetCache(  )
     {
         _jadeConfiguration.clearCache(  );
+        _stringTemplateCache.clear(  );
+        _stringTemplateInvalidations.invalidateAll(  );
+        _fileTemplateCache.clear(  );
+        _fragmentCache.clear(  );
+        _outputSizePredictor.clear(  );
+        _compositeLoader.clear(  );
+        _mapTemplateNames.clear(  );
+        if ( _localizedTemplateResolver != null )
+        {
+            _localizedTemplateResolver.clear(  );
+        }
     }
 
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read only map view over the properties of a bean.
+ * 
+ * Property values are read on access through the cached accessors of the
+ * bean class, nothing is copied when the view is created.
+ */
+final class BeanModelMap extends AbstractMap<String, Object>
+{
+    private final Object _bean;
+    private final BeanProperties _properties;
+    private Set<Map.Entry<String, Object>> _setEntries;
+
+    /**
+     * Constructor
+     * @param bean the bean
+     */
+    BeanModelMap( Object bean )
+    {
+        _bean = bean;
+        _properties = BeanProperties.forClass( bean.getClass(  ) );
+    }
+
+    @Override
+    public Object get( Object key )
+    {
+        return key instanceof String ? _properties.get( _bean, ( String ) key ) : null;
+    }
+
+    @Override
+    public boolean containsKey( Object key )
+    {
+        return key instanceof String && _properties.has( ( String ) key );
+    }
+
+    @Override
+    public int size(  )
+    {
+        return _properties.getNames(  ).size(  );
+    }
+
+    @Override
+    public Set<String> keySet(  )
+    {
+        return _properties.getNames(  );
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet(  )
+    {
+        if ( _setEntries == null )
+        {
+            _setEntries = new AbstractSet<Map.Entry<String, Object>>(  )
+            {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator(  )
+                {
+                    final Iterator<String> names = _properties.getNames(  ).iterator(  );
+                    return new Iterator<Map.Entry<String, Object>>(  )
+                    {
+                        @Override
+                        public boolean hasNext(  )
+                        {
+                            return names.hasNext(  );
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next(  )
+                        {
+                            String strName = names.next(  );
+                            return new SimpleImmutableEntry<String, Object>( strName, _properties.get( _bean, strName ) );
+                        }
+
+                        @Override
+                        public void remove(  )
+                        {
+                            throw new UnsupportedOperationException(  );
+                        }
+                    };
+                }
+
+                @Override
+                public int size(  )
+                {
+                    return BeanModelMap.this.size(  );
+                }
+            };
+        }
+        return _setEntries;
+    }
+}
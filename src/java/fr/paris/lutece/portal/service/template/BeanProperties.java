@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Readable properties of a bean class.
+ * 
+ * The class is introspected once and each getter is turned into a method handle,
+ * so that reading a property no longer goes through reflection.
+ * Instances are shared through a {@link ClassValue}, which does not keep
+ * the classes of an undeployed web application reachable.
+ */
+final class BeanProperties
+{
+    private static final Logger _logger = Logger.getLogger( "lutece.jade" );
+    private static final MethodType GETTER_TYPE = MethodType.methodType( Object.class, Object.class );
+    private static final ClassValue<BeanProperties> _cache = new ClassValue<BeanProperties>(  )
+        {
+            @Override
+            protected BeanProperties computeValue( Class<?> beanClass )
+            {
+                return introspect( beanClass );
+            }
+        };
+
+    private final Map<String, MethodHandle> _mapGetters;
+
+    /**
+     * Constructor
+     * @param mapGetters the getters, by property name
+     */
+    private BeanProperties( Map<String, MethodHandle> mapGetters )
+    {
+        _mapGetters = mapGetters;
+    }
+
+    /**
+     * Get the properties of a bean class
+     * @param beanClass the bean class
+     * @return the properties of the class
+     */
+    static BeanProperties forClass( Class<?> beanClass )
+    {
+        return _cache.get( beanClass );
+    }
+
+    /**
+     * Get the names of the readable properties
+     * @return the property names, in introspection order
+     */
+    Set<String> getNames(  )
+    {
+        return _mapGetters.keySet(  );
+    }
+
+    /**
+     * Check if a property is readable
+     * @param strName the property name
+     * @return <code>true</code> if the property can be read
+     */
+    boolean has( String strName )
+    {
+        return _mapGetters.containsKey( strName );
+    }
+
+    /**
+     * Read a property of a bean
+     * @param bean the bean, an instance of the introspected class
+     * @param strName the property name
+     * @return the property value, or <code>null</code> if there is no such property
+     */
+    Object get( Object bean, String strName )
+    {
+        MethodHandle getter = _mapGetters.get( strName );
+        if ( getter == null )
+        {
+            return null;
+        }
+        try
+        {
+            return getter.invokeExact( bean );
+        } catch ( RuntimeException e )
+        {
+            throw e;
+        } catch ( Error e )
+        {
+            throw e;
+        } catch ( Throwable e )
+        {
+            throw new RuntimeException( "Unable to read property " + strName + " of " + bean.getClass(  ).getName(  ), e );
+        }
+    }
+
+    /**
+     * Introspect a bean class
+     * @param beanClass the bean class
+     * @return the properties of the class
+     */
+    private static BeanProperties introspect( Class<?> beanClass )
+    {
+        try
+        {
+            BeanInfo beanInfo = Introspector.getBeanInfo( beanClass );
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup(  );
+            Map<String, MethodHandle> mapGetters = new LinkedHashMap<String, MethodHandle>(  );
+            for ( PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors(  ) )
+            {
+                Method readMethod = descriptor.getReadMethod(  );
+                MethodHandle getter = ( readMethod != null ) ? unreflect( lookup, readMethod ) : null;
+                if ( getter != null )
+                {
+                    mapGetters.put( descriptor.getName(  ), getter );
+                }
+            }
+            return new BeanProperties( Collections.unmodifiableMap( mapGetters ) );
+        } catch ( IntrospectionException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    /**
+     * Turn a getter into a method handle of type <code>(Object)Object</code>.
+     * A getter declared by a non public class is resolved through the public
+     * superclass or interface declaring it, and made accessible as a last resort.
+     * @param lookup the lookup
+     * @param readMethod the getter
+     * @return the method handle, or <code>null</code> if the getter cannot be accessed
+     */
+    private static MethodHandle unreflect( MethodHandles.Lookup lookup, Method readMethod )
+    {
+        try
+        {
+            return lookup.unreflect( readMethod ).asType( GETTER_TYPE );
+        } catch ( IllegalAccessException e )
+        {
+            MethodHandle getter = unreflectPublic( lookup, readMethod.getDeclaringClass(  ), readMethod.getName(  ) );
+            if ( getter != null )
+            {
+                return getter;
+            }
+        }
+        try
+        {
+            readMethod.setAccessible( true );
+            return MethodHandles.lookup(  ).unreflect( readMethod ).asType( GETTER_TYPE );
+        } catch ( IllegalAccessException | RuntimeException e )
+        {
+            // InaccessibleObjectException when the package is not opened (JDK 9+)
+            _logger.debug( "Jade model property skipped, unable to access " + readMethod, e );
+            return null;
+        }
+    }
+
+    /**
+     * Find a getter in a type or its supertypes, declared by a public type accessible to the lookup
+     * @param lookup the lookup
+     * @param type the type to search
+     * @param strName the getter name
+     * @return the method handle, or <code>null</code> if there is no accessible declaration
+     */
+    private static MethodHandle unreflectPublic( MethodHandles.Lookup lookup, Class<?> type, String strName )
+    {
+        if ( type == null )
+        {
+            return null;
+        }
+        if ( Modifier.isPublic( type.getModifiers(  ) ) )
+        {
+            try
+            {
+                Method method = type.getDeclaredMethod( strName );
+                if ( Modifier.isPublic( method.getModifiers(  ) ) )
+                {
+                    return lookup.unreflect( method ).asType( GETTER_TYPE );
+                }
+            } catch ( NoSuchMethodException e )
+            {
+                // not declared by this type
+            } catch ( IllegalAccessException e )
+            {
+                // type not exported to the lookup
+            }
+        }
+        for ( Class<?> typeInterface : type.getInterfaces(  ) )
+        {
+            MethodHandle getter = unreflectPublic( lookup, typeInterface, strName );
+            if ( getter != null )
+            {
+                return getter;
+            }
+        }
+        return unreflectPublic( lookup, type.getSuperclass(  ), strName );
+    }
+}
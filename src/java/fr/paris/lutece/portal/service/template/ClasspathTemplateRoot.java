@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Template root reading UTF-8 templates from the classpath, for example
+ * from plugin jars. Classpath templates are considered immutable.
+ */
+final class ClasspathTemplateRoot implements TemplateRoot
+{
+    /** Modification date reported for all the classpath templates */
+    private static final long LAST_MODIFIED = 1;
+
+    private final ClassLoader _classLoader;
+    private final String _strPrefix;
+
+    /**
+     * Constructor
+     * @param classLoader the class loader to read the templates from
+     * @param strPrefix the resource path of the templates, for example <code>templates/jade</code>
+     */
+    ClasspathTemplateRoot( ClassLoader classLoader, String strPrefix )
+    {
+        _classLoader = classLoader;
+        String strPath = strPrefix.startsWith( "/" ) ? strPrefix.substring( 1 ) : strPrefix;
+        _strPrefix = ( strPath.isEmpty(  ) || strPath.endsWith( "/" ) ) ? strPath : ( strPath + "/" );
+    }
+
+    @Override
+    public boolean exists( String strName )
+    {
+        return _classLoader.getResource( getResourceName( strName ) ) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The templates being immutable, the constant date is returned without
+     * looking the resource up: the composite loader only asks this root for
+     * templates it resolved to it.
+     */
+    @Override
+    public long getLastModified( String strName )
+    {
+        return LAST_MODIFIED;
+    }
+
+    @Override
+    public Reader getReader( String strName ) throws IOException
+    {
+        InputStream in = _classLoader.getResourceAsStream( getResourceName( strName ) );
+        if ( in == null )
+        {
+            throw new FileNotFoundException( "classpath:" + getResourceName( strName ) );
+        }
+        return new InputStreamReader( in, StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Get the resource name of a template
+     * @param strName the template name
+     * @return the resource name
+     */
+    private String getResourceName( String strName )
+    {
+        return _strPrefix + ( strName.startsWith( "/" ) ? strName.substring( 1 ) : strName );
+    }
+
+    @Override
+    public String toString(  )
+    {
+        return "classpath:" + _strPrefix;
+    }
+}
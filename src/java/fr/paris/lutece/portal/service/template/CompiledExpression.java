@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import de.neuland.jade4j.exceptions.ExpressionException;
+import de.neuland.jade4j.expression.ExpressionHandler;
+import de.neuland.jade4j.model.JadeModel;
+
+/**
+ * An expression of a compiled template.
+ * 
+ * Expressions made of a property chain, like <code>user.address.city</code>, are
+ * resolved directly against the model : map values are read with {@link Map#get(Object)}
+ * and bean properties with the cached getters of {@link BeanProperties}. The other
+ * expressions, and the chains that cannot be resolved this way (null or non public
+ * intermediate values, missing getters), are evaluated by the jade expression handler.
+ */
+final class CompiledExpression
+{
+    private static final Pattern PROPERTY_CHAIN = Pattern.compile( "[A-Za-z_$][A-Za-z0-9_$]*(\\.[A-Za-z_$][A-Za-z0-9_$]*)*" );
+    private static final Set<String> KEYWORDS = new HashSet<String>( Arrays.asList( "or", "and", "eq", "ne", "lt", "gt",
+                "le", "ge", "div", "mod", "not", "null", "true", "false", "new", "empty", "size", "function", "var",
+                "return", "if", "else", "for", "while" ) );
+    private static final Object UNRESOLVED = new Object(  );
+
+    private final String _strExpression;
+    private final String[] _properties;
+
+    /**
+     * Constructor
+     * @param strExpression the expression
+     */
+    CompiledExpression( String strExpression )
+    {
+        _strExpression = strExpression;
+        _properties = parsePropertyChain( strExpression.trim(  ) );
+    }
+
+    /**
+     * Check if the expression is resolved without the jade expression handler
+     * @return <code>true</code> if the expression is a property chain
+     */
+    boolean isPropertyChain(  )
+    {
+        return _properties != null;
+    }
+
+    /**
+     * Evaluate the expression
+     * @param model the model
+     * @return the value of the expression
+     * @throws ExpressionException if the expression cannot be evaluated
+     */
+    Object evaluate( JadeModel model ) throws ExpressionException
+    {
+        if ( _properties != null )
+        {
+            Object value = resolve( model );
+            if ( value != UNRESOLVED )
+            {
+                return value;
+            }
+        }
+        return ExpressionHandler.evaluateExpression( _strExpression, model );
+    }
+
+    /**
+     * Evaluate the expression as a String
+     * @param model the model
+     * @return the value of the expression, or an empty String if it is <code>null</code>
+     * @throws ExpressionException if the expression cannot be evaluated
+     */
+    String evaluateString( JadeModel model ) throws ExpressionException
+    {
+        Object value = evaluate( model );
+        return ( value == null ) ? "" : value.toString(  );
+    }
+
+    /**
+     * Resolve the property chain
+     * @param model the model
+     * @return the value of the chain, or {@link #UNRESOLVED} if it must be evaluated by the expression handler
+     * @throws ExpressionException if a getter fails
+     */
+    private Object resolve( JadeModel model ) throws ExpressionException
+    {
+        Object value = model.get( _properties[0] );
+        for ( int i = 1; i < _properties.length; i++ )
+        {
+            if ( value == null )
+            {
+                // the expression handler also looks for variables named after the whole chain
+                return UNRESOLVED;
+            }
+            if ( value instanceof Map )
+            {
+                value = ( ( Map<?, ?> ) value ).get( _properties[i] );
+                continue;
+            }
+            if ( !Modifier.isPublic( value.getClass(  ).getModifiers(  ) ) )
+            {
+                return UNRESOLVED;
+            }
+            BeanProperties properties;
+            try
+            {
+                properties = BeanProperties.forClass( value.getClass(  ) );
+            } catch ( RuntimeException e )
+            {
+                return UNRESOLVED;
+            }
+            if ( !properties.has( _properties[i] ) )
+            {
+                return UNRESOLVED;
+            }
+            try
+            {
+                value = properties.get( value, _properties[i] );
+            } catch ( RuntimeException e )
+            {
+                throw new ExpressionException( _strExpression, e );
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Split an expression made of a property chain
+     * @param strExpression the expression
+     * @return the properties of the chain, or <code>null</code> if the expression is not a property chain
+     */
+    private static String[] parsePropertyChain( String strExpression )
+    {
+        if ( !PROPERTY_CHAIN.matcher( strExpression ).matches(  ) )
+        {
+            return null;
+        }
+        String[] properties = strExpression.split( "\\." );
+        for ( String strProperty : properties )
+        {
+            if ( KEYWORDS.contains( strProperty ) )
+            {
+                return null;
+            }
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import de.neuland.jade4j.compiler.IndentWriter;
+import de.neuland.jade4j.exceptions.ExpressionException;
+import de.neuland.jade4j.exceptions.JadeCompilerException;
+import de.neuland.jade4j.model.JadeModel;
+import de.neuland.jade4j.parser.node.ExpressionNode;
+import de.neuland.jade4j.template.JadeTemplate;
+
+/**
+ * Buffered code node, like <code>p= user.name</code>, evaluated by a {@link CompiledExpression}
+ */
+final class CompiledExpressionNode extends ExpressionNode
+{
+    private final CompiledExpression _expression;
+    private final boolean _bEscape;
+
+    /**
+     * Constructor
+     * @param node the buffered code node to compile
+     * @param expression the compiled expression of the node
+     * @param bEscape <code>true</code> if the value is HTML escaped
+     */
+    CompiledExpressionNode( ExpressionNode node, CompiledExpression expression, boolean bEscape )
+    {
+        setValue( node.getValue(  ) );
+        setName( node.getName(  ) );
+        setFileName( node.getFileName(  ) );
+        setLineNumber( node.getLineNumber(  ) );
+        setBlock( node.getBlock(  ) );
+        setEscape( bEscape );
+        setBuffer( true );
+        _expression = expression;
+        _bEscape = bEscape;
+    }
+
+    @Override
+    public void execute( IndentWriter writer, JadeModel model, JadeTemplate template )
+        throws JadeCompilerException
+    {
+        try
+        {
+            String strValue = _expression.evaluateString( model );
+            writer.append( _bEscape ? StringEscapeUtils.escapeHtml4( strValue ) : strValue );
+            if ( hasBlock(  ) )
+            {
+                writer.increment(  );
+                block.execute( writer, model, template );
+                writer.decrement(  );
+                writer.newline(  );
+            }
+        } catch ( ExpressionException e )
+        {
+            throw new JadeCompilerException( this, template.getTemplateLoader(  ), e );
+        }
+    }
+}
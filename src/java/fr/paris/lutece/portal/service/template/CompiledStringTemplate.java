@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.Collections;
+import java.util.Set;
+
+import de.neuland.jade4j.template.JadeTemplate;
+
+/**
+ * Compiled String template, with the templates it includes and the output size
+ * estimate of its renderings.
+ * 
+ * The estimate is kept with the template rather than in a map keyed by the template,
+ * so that it is discarded with the template when the template is evicted.
+ * 
+ * @see TemplateInvalidationLog
+ */
+final class CompiledStringTemplate
+{
+    private final JadeTemplate _template;
+    private final OutputSizeEstimate _outputSize = new OutputSizeEstimate(  );
+    private final int _nWeight;
+    private final Set<String> _setDependencies;
+    private volatile long _lCheckedGeneration;
+
+    /**
+     * Constructor
+     * @param strSource the template source
+     * @param template the compiled template
+     */
+    CompiledStringTemplate( String strSource, JadeTemplate template )
+    {
+        this( strSource, template, Collections.<String>emptySet(  ), 0 );
+    }
+
+    /**
+     * Constructor
+     * @param strSource the template source
+     * @param template the compiled template
+     * @param setDependencies the names of the templates included or extended by the template, directly or not
+     * @param lGeneration the generation of the invalidation log read before the compilation
+     */
+    CompiledStringTemplate( String strSource, JadeTemplate template, Set<String> setDependencies, long lGeneration )
+    {
+        _template = template;
+        _setDependencies = setDependencies;
+        _lCheckedGeneration = lGeneration;
+        _nWeight = ( int ) StringTemplateCache.weigh( strSource, template );
+    }
+
+    /**
+     * Get the compiled template
+     * @return the compiled template
+     */
+    JadeTemplate getTemplate(  )
+    {
+        return _template;
+    }
+
+    /**
+     * Check if the template depends on another template
+     * @param strName the name of the other template
+     * @return <code>true</code> if the template includes or extends the other template, directly or not
+     */
+    boolean dependsOn( String strName )
+    {
+        return _setDependencies.contains( strName );
+    }
+
+    /**
+     * Get the generation of the invalidation log the template was last checked in
+     * @return the generation of the last check
+     */
+    long getCheckedGeneration(  )
+    {
+        return _lCheckedGeneration;
+    }
+
+    /**
+     * Set the generation of the invalidation log the template was checked in
+     * @param lGeneration the generation of the check
+     */
+    void setCheckedGeneration( long lGeneration )
+    {
+        _lCheckedGeneration = lGeneration;
+    }
+
+    /**
+     * Get the output size estimate of the template
+     * @return the output size estimate
+     */
+    OutputSizeEstimate getOutputSize(  )
+    {
+        return _outputSize;
+    }
+
+    /**
+     * Get the estimated memory held by the source and the compiled template
+     * @return the estimated size, in bytes
+     */
+    int getWeight(  )
+    {
+        return _nWeight;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import de.neuland.jade4j.compiler.IndentWriter;
+import de.neuland.jade4j.compiler.Utils;
+import de.neuland.jade4j.exceptions.ExpressionException;
+import de.neuland.jade4j.exceptions.JadeCompilerException;
+import de.neuland.jade4j.model.JadeModel;
+import de.neuland.jade4j.parser.node.ExpressionString;
+import de.neuland.jade4j.parser.node.TextNode;
+import de.neuland.jade4j.template.JadeTemplate;
+
+/**
+ * Text node whose interpolations are evaluated by {@link CompiledExpression}s
+ */
+final class CompiledTextNode extends TextNode
+{
+    private final Object[] _parts;
+    private final boolean[] _escapes;
+
+    /**
+     * Constructor
+     * @param text the text node to compile
+     * @param expressions the expressions already compiled for the template, by source
+     */
+    CompiledTextNode( TextNode text, Map<String, CompiledExpression> expressions )
+    {
+        setValue( text.getValue(  ) );
+        setName( text.getName(  ) );
+        setFileName( text.getFileName(  ) );
+        setLineNumber( text.getLineNumber(  ) );
+        List<Object> listParts = Utils.prepareInterpolate( text.getValue(  ), false );
+        _parts = new Object[listParts.size(  )];
+        _escapes = new boolean[listParts.size(  )];
+        for ( int i = 0; i < _parts.length; i++ )
+        {
+            Object part = listParts.get( i );
+            if ( part instanceof ExpressionString )
+            {
+                ExpressionString expression = ( ExpressionString ) part;
+                _parts[i] = ExpressionBinder.compile( expression.getValue(  ), expressions );
+                _escapes[i] = expression.isEscape(  );
+            } else
+            {
+                _parts[i] = part;
+            }
+        }
+    }
+
+    @Override
+    public void execute( IndentWriter writer, JadeModel model, JadeTemplate template )
+        throws JadeCompilerException
+    {
+        StringBuilder sbText = new StringBuilder(  );
+        try
+        {
+            for ( int i = 0; i < _parts.length; i++ )
+            {
+                Object part = _parts[i];
+                if ( part instanceof CompiledExpression )
+                {
+                    String strValue = ( ( CompiledExpression ) part ).evaluateString( model );
+                    sbText.append( _escapes[i] ? StringEscapeUtils.escapeHtml4( strValue ) : strValue );
+                } else
+                {
+                    sbText.append( part );
+                }
+            }
+        } catch ( ExpressionException e )
+        {
+            throw new JadeCompilerException( this, template.getTemplateLoader(  ), e );
+        }
+        writer.append( sbText.toString(  ) );
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.neuland.jade4j.template.TemplateLoader;
+
+/**
+ * Template loader searching several roots in order, the first root holding
+ * a template serving it.
+ * 
+ * The root resolved for each template name, or the absence of any root holding
+ * it, is cached so that a lookup is a hash lookup instead of probing each root.
+ * Resolutions are checked again once their time to live elapsed, or as soon as
+ * the template is invalidated.
+ */
+final class CompositeTemplateLoader implements TemplateLoader
+{
+    /** Default time to live of the resolutions, in milliseconds */
+    static final long DEFAULT_RESOLUTION_TTL = 2000;
+
+    private final List<TemplateRoot> _listRoots;
+    private final ResolutionCache<TemplateRoot> _resolutions;
+
+    /**
+     * Constructor
+     * @param listRoots the roots, by decreasing priority
+     * @param lResolutionTtl the time to live of the resolutions in milliseconds, negative to keep them until invalidated
+     */
+    CompositeTemplateLoader( List<TemplateRoot> listRoots, long lResolutionTtl )
+    {
+        this( listRoots, lResolutionTtl, ResolutionCache.DEFAULT_MAX_ENTRIES );
+    }
+
+    /**
+     * Constructor
+     * @param listRoots the roots, by decreasing priority
+     * @param lResolutionTtl the time to live of the resolutions in milliseconds, negative to keep them until invalidated
+     * @param nMaxResolutions the maximum number of template names whose resolution is kept
+     */
+    CompositeTemplateLoader( List<TemplateRoot> listRoots, long lResolutionTtl, int nMaxResolutions )
+    {
+        _listRoots = new ArrayList<TemplateRoot>( listRoots );
+        _resolutions = new ResolutionCache<TemplateRoot>( lResolutionTtl, nMaxResolutions );
+    }
+
+    @Override
+    public long getLastModified( String strName ) throws IOException
+    {
+        TemplateRoot root = resolve( strName );
+        return ( root == null ) ? 0 : root.getLastModified( strName );
+    }
+
+    @Override
+    public Reader getReader( String strName ) throws IOException
+    {
+        TemplateRoot root = resolve( strName );
+        if ( root == null )
+        {
+            throw new FileNotFoundException( "Jade template not found in " + _listRoots + " : " + strName );
+        }
+        return root.getReader( strName );
+    }
+
+    /**
+     * Get the root serving a template
+     * @param strName the template name
+     * @return the first root holding the template, or <code>null</code> if no root holds it
+     */
+    TemplateRoot resolve( String strName )
+    {
+        ResolutionCache.Resolution<TemplateRoot> resolution = _resolutions.get( strName );
+        return ( resolution == null ) ? _resolutions.put( strName, probe( strName ) ) : resolution.getValue(  );
+    }
+
+    /**
+     * Forget the resolution of a template
+     * @param strName the template name
+     */
+    void invalidate( String strName )
+    {
+        _resolutions.invalidate( strName );
+    }
+
+    /**
+     * Forget all the resolutions
+     */
+    void clear(  )
+    {
+        _resolutions.clear(  );
+    }
+
+    /**
+     * Get the number of cached resolutions
+     * @return the number of cached resolutions
+     */
+    int getResolutionCount(  )
+    {
+        return _resolutions.size(  );
+    }
+
+    /**
+     * Search the roots for a template
+     * @param strName the template name
+     * @return the first root holding the template, or <code>null</code> if no root holds it
+     */
+    private TemplateRoot probe( String strName )
+    {
+        for ( TemplateRoot root : _listRoots )
+        {
+            if ( root.exists( strName ) )
+            {
+                return root;
+            }
+        }
+        return null;
+    }
+}
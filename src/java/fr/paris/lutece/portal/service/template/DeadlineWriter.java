@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer aborting a rendering once its deadline is reached.
+ * 
+ * The deadline is checked as the output is written, so a rendering stuck without
+ * writing anything, for example in a slow model method, is only aborted once it writes again.
+ */
+final class DeadlineWriter extends FilterWriter
+{
+    private static final int CHECK_INTERVAL_MASK = 0x3F;
+
+    private final String _strName;
+    private final long _lMaxRenderTime;
+    private final long _lDeadline;
+    private int _nWrites;
+
+    /**
+     * Constructor
+     * @param out the writer to write to
+     * @param strName the template name
+     * @param lMaxRenderTime the maximum duration of the rendering, in milliseconds
+     */
+    DeadlineWriter( Writer out, String strName, long lMaxRenderTime )
+    {
+        super( out );
+        _strName = strName;
+        _lMaxRenderTime = lMaxRenderTime;
+        _lDeadline = System.nanoTime(  ) + ( lMaxRenderTime * 1000000L );
+    }
+
+    @Override
+    public void write( int c ) throws IOException
+    {
+        checkDeadline(  );
+        out.write( c );
+    }
+
+    @Override
+    public void write( char[] cbuf, int off, int len ) throws IOException
+    {
+        checkDeadline(  );
+        out.write( cbuf, off, len );
+    }
+
+    @Override
+    public void write( String str, int off, int len ) throws IOException
+    {
+        checkDeadline(  );
+        out.write( str, off, len );
+    }
+
+    /**
+     * Check the deadline every few writes
+     */
+    private void checkDeadline(  )
+    {
+        if ( ( ++_nWrites & CHECK_INTERVAL_MASK ) == 0 && System.nanoTime(  ) - _lDeadline > 0 )
+        {
+            // not an IOException, which the jade writer ignores
+            throw new JadeLimitExceededException( "Rendering of jade template " + _strName + " exceeded " +
+                _lMaxRenderTime + " ms" );
+        }
+    }
+}
@@ -36,46 +36,35 @@ package fr.paris.lutece.portal.service.template;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
-import java.nio.charset.Charset;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 import de.neuland.jade4j.template.TemplateLoader;
 
 /**
- * Template loader that can deliver template from a String, or delegate
- * to another TemplateLoader.
- * 
- * The String must be set before each use
+ * Template loader that delivers one String template, and delegates the other
+ * templates, included or extended by the String template, to another TemplateLoader.
  * 
+ * A new loader is created for each compilation of a String template, so that
+ * no state is shared between threads.
  */
 final class DelegatingStringTemplateLoader implements TemplateLoader
 {
 
     /** name of the String template */
     static final String TEMPLATE_NAME = "__STRING_TEMPLATE__.jade";
-    /** Storage for the String template in the current Thread */
-    private final ThreadLocal<String> _strTemplate;
+    /** the String template */
+    private final String _strTemplate;
     /** delegate TemplateLoader */
     private final TemplateLoader _delegate;
     
     /**
      * Constructor
+     * @param strTemplate the String template
      * @param delegate the TemplateLoader to delegate to if not using the String template
      */
-    DelegatingStringTemplateLoader( TemplateLoader delegate )
+    DelegatingStringTemplateLoader( String strTemplate, TemplateLoader delegate )
     {
+        _strTemplate = strTemplate;
         _delegate = delegate;
-        _strTemplate = new ThreadLocal<String>(  );
-    }
-    
-    /**
-     * Sets the String template
-     * @param template the String template
-     */
-    void setStringTemplate( String template )
-    {
-        _strTemplate.set( template );
     }
     
     @Override
@@ -83,31 +72,8 @@ final class DelegatingStringTemplateLoader implements TemplateLoader
     {
         if ( TEMPLATE_NAME.equals( name ) )
         {
-            String strTemplate = _strTemplate.get(  );
-            if ( strTemplate == null )
-            {
-                throw new IllegalStateException( "setTemplate must be called first on this thread" );
-            }
-            try
-            {
-                // Allow caching of String templates. Hopefully there will be few to no collisions
-                MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
-                byte[] sha1 = digest.digest( strTemplate.getBytes( Charset.forName( "UTF-8" ) ) );
-                return (long)(
-                        (long)(0xff & sha1[0]) << 56  |
-                        (long)(0xff & sha1[1]) << 48  |
-                        (long)(0xff & sha1[2]) << 40  |
-                        (long)(0xff & sha1[3]) << 32  |
-                        (long)(0xff & sha1[4]) << 24  |
-                        (long)(0xff & sha1[5]) << 16  |
-                        (long)(0xff & sha1[6]) << 8   |
-                        (long)(0xff & sha1[7]) << 0
-                        );
-            } catch ( NoSuchAlgorithmException e )
-            {
-                // should not happen
-                throw new RuntimeException( e );
-            }
+            // String templates are cached by content, see StringTemplateCache
+            return 0;
         }
         return _delegate.getLastModified( name );
     }
@@ -117,15 +83,9 @@ final class DelegatingStringTemplateLoader implements TemplateLoader
     {
         if ( TEMPLATE_NAME.equals( name ) )
         {
-            if ( _strTemplate.get(  ) == null )
-            {
-                throw new IllegalStateException( "setTemplate must be called first on this thread" );
-            }
-            Reader reader = new StringReader( _strTemplate.get(  ) );
-            _strTemplate.remove(  );
-            return reader;
+            return new StringReader( _strTemplate );
         }
         return _delegate.getReader( name );
     }
     
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Template root reading UTF-8 templates from a directory. Template names are
+ * appended to the directory path, like the jade FileTemplateLoader.
+ */
+final class DirectoryTemplateRoot implements TemplateRoot
+{
+    private final String _strBasePath;
+
+    /**
+     * Constructor
+     * @param strBasePath the directory path
+     */
+    DirectoryTemplateRoot( String strBasePath )
+    {
+        _strBasePath = strBasePath.endsWith( "/" ) ? strBasePath : ( strBasePath + "/" );
+    }
+
+    /**
+     * Get the directory path
+     * @return the directory path, ending with a slash
+     */
+    String getBasePath(  )
+    {
+        return _strBasePath;
+    }
+
+    @Override
+    public boolean exists( String strName )
+    {
+        return getFile( strName ).isFile(  );
+    }
+
+    @Override
+    public long getLastModified( String strName )
+    {
+        return getFile( strName ).lastModified(  );
+    }
+
+    @Override
+    public Reader getReader( String strName ) throws IOException
+    {
+        return new InputStreamReader( new FileInputStream( getFile( strName ) ), StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Get the file of a template
+     * @param strName the template name
+     * @return the template file
+     */
+    private File getFile( String strName )
+    {
+        return new File( _strBasePath + strName );
+    }
+
+    @Override
+    public String toString(  )
+    {
+        return _strBasePath;
+    }
+}
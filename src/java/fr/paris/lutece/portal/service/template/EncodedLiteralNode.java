@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.nio.charset.StandardCharsets;
+
+import de.neuland.jade4j.compiler.IndentWriter;
+import de.neuland.jade4j.exceptions.JadeCompilerException;
+import de.neuland.jade4j.model.JadeModel;
+import de.neuland.jade4j.parser.node.LiteralNode;
+import de.neuland.jade4j.template.JadeTemplate;
+
+/**
+ * Literal node keeping its text encoded in UTF-8, so that rendering to a
+ * {@link Utf8OutputWriter} copies the bytes instead of encoding the text again.
+ */
+class EncodedLiteralNode extends LiteralNode
+{
+    private final byte[] _bytes;
+
+    /**
+     * Constructor
+     * @param literal the literal node to replace
+     */
+    EncodedLiteralNode( LiteralNode literal )
+    {
+        setValue( literal.getValue(  ) );
+        setFileName( literal.getFileName(  ) );
+        setLineNumber( literal.getLineNumber(  ) );
+        _bytes = literal.getValue(  ).getBytes( StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Get the size of the encoded text
+     * @return the number of bytes of the encoded text
+     */
+    int getEncodedLength(  )
+    {
+        return _bytes.length;
+    }
+
+    @Override
+    public void execute( IndentWriter writer, JadeModel model, JadeTemplate template ) throws JadeCompilerException
+    {
+        if ( model instanceof LayeredJadeModel )
+        {
+            Utf8OutputWriter out = ( ( LayeredJadeModel ) model ).getUtf8Output(  );
+            if ( out != null )
+            {
+                out.expect( getValue(  ), _bytes );
+            }
+        }
+        writer.append( getValue(  ) );
+    }
+}
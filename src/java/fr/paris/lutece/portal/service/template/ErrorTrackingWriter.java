@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Writer keeping the first IOException of the writer it wraps.
+ * 
+ * The jade renderer swallows the IOExceptions of its writer : this writer records the
+ * first one, ignores the output written after it, and reports it with {@link #checkError()}
+ * once the rendering is over.
+ */
+final class ErrorTrackingWriter extends FilterWriter
+{
+    private IOException _error;
+
+    /**
+     * Constructor
+     * @param out the writer to write to
+     */
+    ErrorTrackingWriter( Writer out )
+    {
+        super( out );
+    }
+
+    @Override
+    public void write( int c ) throws IOException
+    {
+        if ( _error == null )
+        {
+            try
+            {
+                out.write( c );
+            } catch ( IOException e )
+            {
+                _error = e;
+            }
+        }
+    }
+
+    @Override
+    public void write( char[] cbuf, int off, int len ) throws IOException
+    {
+        if ( _error == null )
+        {
+            try
+            {
+                out.write( cbuf, off, len );
+            } catch ( IOException e )
+            {
+                _error = e;
+            }
+        }
+    }
+
+    @Override
+    public void write( String str, int off, int len ) throws IOException
+    {
+        if ( _error == null )
+        {
+            try
+            {
+                out.write( str, off, len );
+            } catch ( IOException e )
+            {
+                _error = e;
+            }
+        }
+    }
+
+    @Override
+    public void flush(  ) throws IOException
+    {
+        if ( _error == null )
+        {
+            try
+            {
+                out.flush(  );
+            } catch ( IOException e )
+            {
+                _error = e;
+            }
+        }
+    }
+
+    /**
+     * Report the first IOException of the wrapped writer
+     * @throws UncheckedIOException if the wrapped writer failed
+     */
+    void checkError(  )
+    {
+        if ( _error != null )
+        {
+            throw new UncheckedIOException( _error );
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.ListIterator;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import de.neuland.jade4j.parser.node.ExpressionNode;
+import de.neuland.jade4j.parser.node.Node;
+import de.neuland.jade4j.parser.node.TagNode;
+import de.neuland.jade4j.parser.node.TextNode;
+import de.neuland.jade4j.template.JadeTemplate;
+
+/**
+ * Replaces the interpolated texts and the buffered code nodes of a compiled template
+ * by nodes evaluating {@link CompiledExpression}s.
+ * 
+ * Each distinct expression of a template is compiled once and shared by the nodes
+ * using it. Attributes, conditions and loops are still evaluated by jade.
+ */
+final class ExpressionBinder
+{
+    private static final Logger _logger = Logger.getLogger( "lutece.jade" );
+    private static final String INTERPOLATION = "#{";
+    private static final String UNESCAPED_INTERPOLATION = "!{";
+    private static final Field FIELD_ESCAPE = getField( ExpressionNode.class, "escape" );
+    private static final Field FIELD_BUFFER = getField( ExpressionNode.class, "buffer" );
+    private static final Field FIELD_CODE_NODE = getField( TagNode.class, "codeNode" );
+
+    /**
+     * Private constructor
+     */
+    private ExpressionBinder(  )
+    {
+    }
+
+    /**
+     * Bind the expressions of a template
+     * @param template the compiled template
+     */
+    static void bind( JadeTemplate template )
+    {
+        if ( FIELD_ESCAPE == null || FIELD_BUFFER == null || FIELD_CODE_NODE == null )
+        {
+            return;
+        }
+        bind( template.getRootNode(  ), new HashMap<String, CompiledExpression>(  ) );
+    }
+
+    /**
+     * Get the compiled version of an expression
+     * @param strExpression the expression
+     * @param expressions the expressions already compiled for the template, by source
+     * @return the compiled expression
+     */
+    static CompiledExpression compile( String strExpression, Map<String, CompiledExpression> expressions )
+    {
+        CompiledExpression expression = expressions.get( strExpression );
+        if ( expression == null )
+        {
+            expression = new CompiledExpression( strExpression );
+            expressions.put( strExpression, expression );
+        }
+        return expression;
+    }
+
+    /**
+     * Bind the expressions of a node and its children
+     * @param node the node
+     * @param expressions the expressions already compiled for the template, by source
+     */
+    private static void bind( Node node, Map<String, CompiledExpression> expressions )
+    {
+        if ( node instanceof TagNode )
+        {
+            TagNode tag = ( TagNode ) node;
+            if ( tag.hasTextNode(  ) )
+            {
+                tag.setTextNode( compile( tag.getTextNode(  ), expressions ) );
+            }
+            if ( tag.hasCodeNode(  ) )
+            {
+                tag.setCodeNode( compile( ( Node ) read( FIELD_CODE_NODE, tag ), expressions ) );
+            }
+        }
+        if ( !( node instanceof TextNode ) && node.getNodes(  ) != null )
+        {
+            for ( ListIterator<Node> iterator = node.getNodes(  ).listIterator(  ); iterator.hasNext(  ); )
+            {
+                iterator.set( compile( iterator.next(  ), expressions ) );
+            }
+        }
+        for ( Node child : TemplateNodes.getChildren( node ) )
+        {
+            bind( child, expressions );
+        }
+    }
+
+    /**
+     * Get the compiled version of a node
+     * @param node the node
+     * @param expressions the expressions already compiled for the template, by source
+     * @return the compiled node, or the node itself if it is not compiled
+     */
+    private static Node compile( Node node, Map<String, CompiledExpression> expressions )
+    {
+        if ( node.getClass(  ) == TextNode.class )
+        {
+            String strValue = ( ( TextNode ) node ).getValue(  );
+            if ( strValue != null &&
+                    ( strValue.contains( INTERPOLATION ) || strValue.contains( UNESCAPED_INTERPOLATION ) ) )
+            {
+                return new CompiledTextNode( ( TextNode ) node, expressions );
+            }
+        } else if ( node.getClass(  ) == ExpressionNode.class && Boolean.TRUE.equals( read( FIELD_BUFFER, node ) ) )
+        {
+            // unbuffered code, like assignments, keeps its side effects
+            return new CompiledExpressionNode( ( ExpressionNode ) node, compile( node.getValue(  ), expressions ),
+                Boolean.TRUE.equals( read( FIELD_ESCAPE, node ) ) );
+        }
+        return node;
+    }
+
+    /**
+     * Read a private field of a node
+     * @param field the field
+     * @param node the node
+     * @return the field value
+     */
+    private static Object read( Field field, Node node )
+    {
+        try
+        {
+            return field.get( node );
+        } catch ( IllegalAccessException e )
+        {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * Get a private field of a node class
+     * @param nodeClass the node class
+     * @param strName the field name
+     * @return the accessible field, or <code>null</code> if it is not available in this version of jade
+     */
+    private static Field getField( Class<?> nodeClass, String strName )
+    {
+        try
+        {
+            Field field = nodeClass.getDeclaredField( strName );
+            field.setAccessible( true );
+            return field;
+        } catch ( NoSuchFieldException | SecurityException e )
+        {
+            _logger.warn( "Jade expressions will not be compiled, " + nodeClass.getName(  ) + "." + strName + " is not available", e );
+            return null;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.Weigher;
+
+import de.neuland.jade4j.template.JadeTemplate;
+import de.neuland.jade4j.template.TemplateLoader;
+
+/**
+ * Cache of compiled file templates.
+ * 
+ * Each entry holds the compilation of a template as a future : when several threads
+ * miss the same template at the same time, only the first one compiles it and the
+ * others wait for its result. Entries are recompiled when the last modification
+ * date reported by the template loader changes, or when they are invalidated
+ * because a template they depend on changed. The least recently used entries are
+ * evicted once the maximum number of entries is reached, or, when the cache is bounded
+ * by weight, once the estimated memory held by the compiled templates reaches the maximum.
+ */
+final class FileTemplateCache
+{
+    /** Default maximum number of cached templates, the same as the jade configuration cache */
+    static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final ConcurrentLinkedHashMap<String, CachedTemplate> _mapTemplates;
+    private final long _lMaxWeight;
+    private final TemplateLoader _templateLoader;
+    private final TemplateCompiler _compiler;
+    private final TemplateDependencyGraph _dependencyGraph;
+    private final IJadeMetricsListener _metricsListener;
+    private final Set<CachedTemplate> _setCompilations = Collections.newSetFromMap( new ConcurrentHashMap<CachedTemplate, Boolean>(  ) );
+
+    /**
+     * Constructor
+     * @param templateLoader the template loader, used to check template modifications
+     * @param compiler the template compiler
+     * @param nMaxEntries maximum number of cached templates
+     */
+    FileTemplateCache( TemplateLoader templateLoader, TemplateCompiler compiler, int nMaxEntries )
+    {
+        this( templateLoader, compiler, nMaxEntries, null );
+    }
+
+    /**
+     * Constructor
+     * @param templateLoader the template loader, used to check template modifications
+     * @param compiler the template compiler
+     * @param nMaxEntries maximum number of cached templates
+     * @param metricsListener the listener notified of the lookups, or <code>null</code>
+     */
+    FileTemplateCache( TemplateLoader templateLoader, TemplateCompiler compiler, int nMaxEntries,
+        IJadeMetricsListener metricsListener )
+    {
+        this( templateLoader, compiler, nMaxEntries, 0, metricsListener );
+    }
+
+    /**
+     * Constructor
+     * @param templateLoader the template loader, used to check template modifications
+     * @param compiler the template compiler
+     * @param nMaxEntries maximum number of cached templates, when the cache is not bounded by weight
+     * @param lMaxWeight maximum estimated size of the cached templates in bytes, or 0 to bound the number of entries
+     * @param metricsListener the listener notified of the lookups, or <code>null</code>
+     */
+    FileTemplateCache( TemplateLoader templateLoader, TemplateCompiler compiler, int nMaxEntries, long lMaxWeight,
+        IJadeMetricsListener metricsListener )
+    {
+        _templateLoader = templateLoader;
+        _compiler = compiler;
+        _metricsListener = metricsListener;
+        _dependencyGraph = new TemplateDependencyGraph(  );
+        _lMaxWeight = lMaxWeight;
+        if ( lMaxWeight > 0 )
+        {
+            _mapTemplates = new ConcurrentLinkedHashMap.Builder<String, CachedTemplate>(  ).maximumWeightedCapacity( lMaxWeight )
+                                                                                        .weigher( new Weigher<CachedTemplate>(  )
+                    {
+                        @Override
+                        public int weightOf( CachedTemplate cached )
+                        {
+                            return cached._nWeight;
+                        }
+                    } ).build(  );
+        } else
+        {
+            _mapTemplates = new ConcurrentLinkedHashMap.Builder<String, CachedTemplate>(  ).maximumWeightedCapacity( nMaxEntries ).build(  );
+        }
+    }
+
+    /**
+     * Get a compiled template, compiling it if needed
+     * @param strName the template name
+     * @param bCheckModification <code>true</code> to recompile the template if its
+     * modification date changed, <code>false</code> if changes are reported through {@link #invalidate(String)}
+     * @return the compiled template
+     * @throws IOException if the template cannot be read
+     */
+    JadeTemplate get( String strName, boolean bCheckModification ) throws IOException
+    {
+        long lStart = ( _metricsListener == null ) ? 0 : System.nanoTime(  );
+        while ( true )
+        {
+            CachedTemplate cached = _mapTemplates.get( strName );
+            if ( cached != null && !bCheckModification )
+            {
+                return await( strName, cached, true, lStart );
+            }
+            long lLastModified = _templateLoader.getLastModified( strName );
+            if ( cached != null && cached._lLastModified == lLastModified )
+            {
+                return await( strName, cached, true, lStart );
+            }
+            CachedTemplate compilation = new CachedTemplate( lLastModified, strName );
+            boolean bOwner = ( cached == null ) ? ( _mapTemplates.putIfAbsent( strName, compilation ) == null )
+                                                : _mapTemplates.replace( strName, cached, compilation );
+            if ( bOwner )
+            {
+                compilation._future.run(  );
+                JadeTemplate template = await( strName, compilation, false, lStart );
+                if ( _lMaxWeight > 0 )
+                {
+                    weigh( strName, compilation, template );
+                }
+                return template;
+            }
+            // another thread started the compilation first
+        }
+    }
+
+    /**
+     * Evict a template and the templates including or extending it, directly or not
+     * @param strName the name of the changed template
+     */
+    void invalidate( String strName )
+    {
+        evictDependents( strName );
+        for ( CachedTemplate compilation : _setCompilations )
+        {
+            // the dependencies of compilations in progress are not registered yet
+            if ( compilation.hasRead( strName ) )
+            {
+                _mapTemplates.remove( compilation._strName, compilation );
+            }
+        }
+        // a compilation may have registered its dependencies, and left the compilations
+        // in progress, after the first eviction
+        evictDependents( strName );
+    }
+
+    /**
+     * Evict a template and the registered templates including or extending it
+     * @param strName the name of the changed template
+     */
+    private void evictDependents( String strName )
+    {
+        Set<String> setEvicted = _dependencyGraph.getDependents( strName );
+        setEvicted.add( strName );
+        for ( String strEvicted : setEvicted )
+        {
+            // the dependencies are forgotten first : a compilation cached after the eviction
+            // must keep the dependencies it registers
+            _dependencyGraph.remove( strEvicted );
+            _mapTemplates.remove( strEvicted );
+        }
+    }
+
+    /**
+     * Get the templates a template depends on
+     * @param strName the template name
+     * @return the names of the templates included or extended by the template, directly or not
+     */
+    Set<String> getDependencies( String strName )
+    {
+        return _dependencyGraph.getDependencies( strName );
+    }
+
+    /**
+     * Get the templates depending on a template
+     * @param strName the template name
+     * @return the names of the templates including or extending the template, directly or not
+     */
+    Set<String> getDependents( String strName )
+    {
+        return _dependencyGraph.getDependents( strName );
+    }
+
+    /**
+     * Remove all the cached templates
+     */
+    void clear(  )
+    {
+        _mapTemplates.clear(  );
+        _dependencyGraph.clear(  );
+    }
+
+    /**
+     * Get the number of cached templates
+     * @return the number of cached templates
+     */
+    int size(  )
+    {
+        return _mapTemplates.size(  );
+    }
+
+    /**
+     * Get the weight of the cached templates
+     * @return the estimated size of the cached templates in bytes when the cache is bounded
+     * by weight, the number of cached templates otherwise
+     */
+    long weightedSize(  )
+    {
+        return _mapTemplates.weightedSize(  );
+    }
+
+    /**
+     * Weigh a cache entry again now that its template is compiled
+     * @param strName the template name
+     * @param compilation the cache entry
+     * @param template the compiled template
+     */
+    private void weigh( String strName, CachedTemplate compilation, JadeTemplate template )
+    {
+        long lWeight = TemplateSizeEstimator.estimate( template );
+        if ( lWeight > _lMaxWeight )
+        {
+            // kept out of the cache rather than evicting every other template
+            _mapTemplates.remove( strName, compilation );
+            _dependencyGraph.remove( strName );
+            return;
+        }
+        compilation._nWeight = ( int ) Math.min( Integer.MAX_VALUE, lWeight );
+        _mapTemplates.replace( strName, compilation, compilation );
+    }
+
+    /**
+     * Wait for the compilation of a template
+     * @param strName the template name
+     * @param cached the cache entry
+     * @param bCacheHit <code>true</code> if the entry was found in cache
+     * @param lStart the start time of the lookup, in nanoseconds
+     * @return the compiled template
+     * @throws IOException if the template cannot be read
+     */
+    private JadeTemplate await( String strName, CachedTemplate cached, boolean bCacheHit, long lStart )
+        throws IOException
+    {
+        try
+        {
+            JadeTemplate template = cached._future.get(  );
+            if ( _metricsListener != null )
+            {
+                _metricsListener.onLookup( strName, bCacheHit, System.nanoTime(  ) - lStart );
+            }
+            return template;
+        } catch ( InterruptedException e )
+        {
+            Thread.currentThread(  ).interrupt(  );
+            throw new InterruptedIOException( "Interrupted while waiting for the compilation of " + strName );
+        } catch ( ExecutionException e )
+        {
+            // failed compilations are not cached
+            _mapTemplates.remove( strName, cached );
+            Throwable cause = e.getCause(  );
+            if ( cause instanceof IOException )
+            {
+                throw ( IOException ) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw ( RuntimeException ) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw ( Error ) cause;
+            }
+            throw new RuntimeException( cause );
+        }
+    }
+
+    /**
+     * Cache entry : the compilation of a template
+     */
+    private final class CachedTemplate
+    {
+        private final String _strName;
+        private final long _lLastModified;
+        private final FutureTask<JadeTemplate> _future;
+        private volatile int _nWeight = 1;
+        private volatile RecordingTemplateLoader _recordingLoader;
+
+        /**
+         * Constructor
+         * @param lLastModified the last modification date of the template
+         * @param strName the template name
+         */
+        CachedTemplate( long lLastModified, final String strName )
+        {
+            _strName = strName;
+            _lLastModified = lLastModified;
+            _future = new FutureTask<JadeTemplate>( new Callable<JadeTemplate>(  )
+                    {
+                        @Override
+                        public JadeTemplate call(  ) throws IOException
+                        {
+                            RecordingTemplateLoader templateLoader = new RecordingTemplateLoader( _templateLoader );
+                            _recordingLoader = templateLoader;
+                            // listed before reading any template, so that invalidations see what it reads
+                            _setCompilations.add( CachedTemplate.this );
+                            try
+                            {
+                                JadeTemplate template = _compiler.compile( strName, templateLoader );
+                                _dependencyGraph.update( strName, templateLoader.getNames(  ) );
+                                return template;
+                            } finally
+                            {
+                                _setCompilations.remove( CachedTemplate.this );
+                                _recordingLoader = null;
+                            }
+                        }
+                    } );
+        }
+
+        /**
+         * Check if the compilation read a template
+         * @param strName the template name
+         * @return <code>true</code> if the compilation is in progress and read the template
+         */
+        boolean hasRead( String strName )
+        {
+            RecordingTemplateLoader templateLoader = _recordingLoader;
+            return templateLoader != null && templateLoader.hasRead( strName );
+        }
+    }
+}
@@ -35,21 +35,22 @@ package fr.paris.lutece.portal.service.template;
 
 import java.io.IOException;
 import java.io.StringWriter;
-import java.util.Collection;
-import java.util.HashSet;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.log4j.Logger;
 
-import fr.paris.lutece.util.html.HtmlTemplate;
+import freemarker.core.CallPlaceCustomDataInitializationException;
+import freemarker.core.DirectiveCallPlace;
 import freemarker.core.Environment;
 import freemarker.template.TemplateDirectiveBody;
 import freemarker.template.TemplateDirectiveModel;
 import freemarker.template.TemplateException;
-import freemarker.template.TemplateHashModel;
 import freemarker.template.TemplateModel;
 import freemarker.template.TemplateModelException;
+import freemarker.template.utility.DeepUnwrap;
+import freemarker.template.utility.ObjectFactory;
 
 /**
  * Freemarker directive for processing its body with the jade template engine.
@@ -59,13 +60,40 @@ import freemarker.template.TemplateModelException;
  * be escaped like so:
  * 
  * <code>${r"#{jade_var}"}</code>
+ * 
+ * The rendering can be cached in the {@link IJadeFragmentCache} with the
+ * <code>cacheKey</code> parameter, for <code>ttl</code> seconds (60 by default) :
+ * 
+ * <code>&lt;@jade cacheKey="footer_" + locale ttl=300&gt;</code>
+ * 
+ * Like the freemarker built-in directives, the directive fails with a
+ * {@link TemplateModelException} on any other parameter or on a ttl which is not a number.
+ * 
+ * A body without freemarker interpolations nor directives is static : it is compiled
+ * once per directive call and only rendered by jade afterwards.
  */
 public class FreemarkerDirective implements TemplateDirectiveModel
 {
 
+    /** Parameter caching the rendered directive under a key */
+    private static final String PARAMETER_CACHE_KEY = "cacheKey";
+    /** Parameter setting the time to live of the cached rendering, in seconds */
+    private static final String PARAMETER_TTL = "ttl";
+    /** Default time to live of the cached renderings, in seconds */
+    private static final int DEFAULT_TTL = 60;
+
     private static final Logger _logger = Logger.getLogger( "lutece.jade" );
     
     private final IJadeTemplateService _jadeTemplateService;
+    private final OutputBufferPool _bodyBufferPool = new OutputBufferPool( 2 * Runtime.getRuntime(  ).availableProcessors(  ) );
+    private final ObjectFactory _callPlaceDataFactory = new ObjectFactory(  )
+        {
+            @Override
+            public Object createObject(  )
+            {
+                return new CallPlaceData(  );
+            }
+        };
     
     /**
      * Constructor
@@ -80,153 +108,155 @@ public class FreemarkerDirective implements TemplateDirectiveModel
     public void execute( Environment env, @SuppressWarnings( "rawtypes" ) Map params, TemplateModel[ ] loopVars, TemplateDirectiveBody body )
             throws TemplateException, IOException
     {
-        StringWriter bodyOut = new StringWriter(  );
-        body.render( bodyOut );
-        _logger.debug( bodyOut.toString( ) );
-        HtmlTemplate res = _jadeTemplateService.loadTemplate( bodyOut.toString(  ), env.getLocale(  ), getModel( env ) );
-        env.getOut(  ).write( res.getHtml(  ) );
-    }
-
-    /**
-     * Construct a jade model from a freemarker model
-     * @param env the freemarker processing environment
-     * @return a jade model
-     */
-    private Map<String, Object> getModel( final Environment env )
-    {
-        final TemplateHashModel freemarkerModel = env.getDataModel(  );
-        return new Map<String, Object>(  ) {
-
-            @Override
-            public int size( )
+        String strCacheKey = null;
+        int nTtl = DEFAULT_TTL;
+        for ( Object param : params.entrySet(  ) )
+        {
+            Map.Entry<?, ?> entry = ( Map.Entry<?, ?> ) param;
+            Object value = DeepUnwrap.unwrap( ( TemplateModel ) entry.getValue(  ) );
+            if ( PARAMETER_CACHE_KEY.equals( entry.getKey(  ) ) )
             {
-                try
-                {
-                    return env.getKnownVariableNames( ).size( );
-                } catch ( TemplateModelException e )
-                {
-                    throw new RuntimeException( e );
-                }
-            }
-
-            @Override
-            public boolean isEmpty( )
+                strCacheKey = String.valueOf( value );
+            } else if ( PARAMETER_TTL.equals( entry.getKey(  ) ) )
             {
-                try
-                {
-                    return freemarkerModel.isEmpty(  );
-                } catch ( TemplateModelException e )
-                {
-                    throw new RuntimeException( e );
-                }
-            }
-
-            @Override
-            public boolean containsKey( Object key )
+                nTtl = getTtl( value );
+            } else
             {
-                return get( key ) != null;
+                throw new TemplateModelException( "Unsupported parameter of the jade directive : " + entry.getKey(  ) +
+                    ", the supported parameters are " + PARAMETER_CACHE_KEY + " and " + PARAMETER_TTL );
             }
+        }
+        if ( strCacheKey == null )
+        {
+            render( env, body, env.getOut(  ) );
+            return;
+        }
+        IJadeFragmentCache fragmentCache = _jadeTemplateService.getFragmentCache(  );
+        String strFragment = fragmentCache.get( strCacheKey );
+        if ( strFragment == null )
+        {
+            StringWriter out = new StringWriter(  );
+            render( env, body, out );
+            strFragment = out.toString(  );
+            fragmentCache.put( strCacheKey, strFragment, nTtl );
+        }
+        env.getOut(  ).write( strFragment );
+    }
 
-            @Override
-            public boolean containsValue( Object value )
-            {
-                throw new UnsupportedOperationException(  );
-            }
+    /**
+     * Get the time to live of the cached rendering
+     * @param value the value of the ttl parameter, a number or a numeric string
+     * @return the time to live in seconds
+     * @throws TemplateModelException if the value is not a number of seconds
+     */
+    private static int getTtl( Object value ) throws TemplateModelException
+    {
+        if ( value instanceof Number )
+        {
+            return ( ( Number ) value ).intValue(  );
+        }
+        try
+        {
+            return Integer.parseInt( String.valueOf( value ).trim(  ) );
+        } catch ( NumberFormatException e )
+        {
+            throw new TemplateModelException( "The jade directive parameter " + PARAMETER_TTL + " must be a number of seconds : " + value );
+        }
+    }
 
-            @Override
-            public Object get( Object key )
+    /**
+     * Render the body with freemarker, then with jade
+     * @param env the freemarker environment
+     * @param body the directive body
+     * @param out the writer to render to
+     * @throws TemplateException if freemarker fails
+     * @throws IOException if the output cannot be written
+     */
+    private void render( Environment env, TemplateDirectiveBody body, Writer out )
+        throws TemplateException, IOException
+    {
+        // the call place identifies the directive body in its freemarker template
+        DirectiveCallPlace callPlace = env.getCurrentDirectiveCallPlace(  );
+        CallPlaceData callPlaceData = getCallPlaceData( callPlace );
+        if ( callPlaceData != null && callPlace.isNestedOutputCacheable(  ) )
+        {
+            IJadeCompiledTemplate staticBody = callPlaceData._staticBody;
+            if ( staticBody == null || !staticBody.isValid(  ) )
             {
-                try
-                {
-                    return freemarkerModel.get( ( String ) key );
-                } catch ( TemplateModelException e )
+                StringWriter bodyOut = new StringWriter(  );
+                body.render( bodyOut );
+                String strStaticBody = bodyOut.toString(  );
+                if ( _logger.isDebugEnabled(  ) )
                 {
-                    throw new RuntimeException( e );
+                    _logger.debug( strStaticBody );
                 }
+                staticBody = _jadeTemplateService.compile( strStaticBody );
+                callPlaceData._staticBody = staticBody;
             }
-
-            @Override
-            public Object put( String key, Object value )
-            {
-                throw new UnsupportedOperationException(  );
-            }
-
-            @Override
-            public Object remove( Object key )
+            try
             {
-                throw new UnsupportedOperationException(  );
-            }
-
-            @Override
-            public void putAll( Map<? extends String, ? extends Object> m )
-            {
-                throw new UnsupportedOperationException(  );
-            }
-
-            @Override
-            public void clear( )
-            {
-                throw new UnsupportedOperationException(  );
-            }
-
-            @Override
-            public Set<String> keySet( )
+                staticBody.render( new FreemarkerModelAdapter( env ), out );
+            } catch ( UncheckedIOException e )
             {
-                throw new UnsupportedOperationException(  );
+                throw e.getCause(  );
             }
+            return;
+        }
+        String strBody;
+        OutputSizeEstimate bodySize = ( callPlaceData != null ) ? callPlaceData._bodySize : new OutputSizeEstimate(  );
+        OutputBuffer bodyOut = _bodyBufferPool.acquire( bodySize.predict(  ) );
+        try
+        {
+            body.render( bodyOut );
+            bodySize.record( bodyOut.length(  ) );
+            strBody = bodyOut.toString(  );
+        } finally
+        {
+            _bodyBufferPool.release( bodyOut );
+        }
+        if ( _logger.isDebugEnabled(  ) )
+        {
+            _logger.debug( strBody );
+        }
+        try
+        {
+            _jadeTemplateService.render( strBody, env.getLocale(  ), new FreemarkerModelAdapter( env ), out );
+        } catch ( UncheckedIOException e )
+        {
+            throw e.getCause(  );
+        }
+    }
 
-            @Override
-            public Collection<Object> values( )
-            {
-                throw new UnsupportedOperationException(  );
-            }
+    /**
+     * Get the data kept for a directive call, in its freemarker template, so that the data
+     * is discarded with the template
+     * @param callPlace the directive call place
+     * @return the data of the call, or <code>null</code> if the directive is not called from a template
+     * @throws TemplateModelException if the data cannot be created
+     */
+    private CallPlaceData getCallPlaceData( DirectiveCallPlace callPlace )
+        throws TemplateModelException
+    {
+        if ( callPlace == null )
+        {
+            return null;
+        }
+        try
+        {
+            return ( CallPlaceData ) callPlace.getOrCreateCustomData( this, _callPlaceDataFactory );
+        } catch ( CallPlaceCustomDataInitializationException e )
+        {
+            throw new TemplateModelException( e );
+        }
+    }
 
-            @Override
-            public Set<java.util.Map.Entry<String, Object>> entrySet( )
-            {
-                try
-                {
-                    @SuppressWarnings( "unchecked" )
-                    Set<String> keys = env.getKnownVariableNames( );
-                    Set<java.util.Map.Entry<String, Object>> res = new HashSet<Map.Entry<String,Object>>( keys.size( ) );
-                    for ( final String name : keys )
-                    {
-                        res.add( new Entry<String, Object>( )
-                        {
-                            
-                            @Override
-                            public Object setValue( Object value )
-                            {
-                                throw new UnsupportedOperationException(  );
-                            }
-                            
-                            @Override
-                            public Object getValue( )
-                            {
-                                try
-                                {
-                                    return env.getVariable( name );
-                                } catch ( TemplateModelException e )
-                                {
-                                    throw new RuntimeException( e );
-                                }
-                            }
-                            
-                            @Override
-                            public String getKey( )
-                            {
-                                return name;
-                            }
-                        } );
-                    }
-                    return res;
-                } catch ( TemplateModelException e )
-                {
-                    throw new RuntimeException( e );
-                }
-            }
-            
-        };
+    /**
+     * Data kept for a directive call
+     */
+    private static final class CallPlaceData
+    {
+        private final OutputSizeEstimate _bodySize = new OutputSizeEstimate(  );
+        private volatile IJadeCompiledTemplate _staticBody;
     }
 
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import freemarker.core.Environment;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.utility.DeepUnwrap;
+
+/**
+ * Read only view of a freemarker processing environment as a jade model.
+ * 
+ * Variables are resolved lazily from the environment, unwrapped to plain java
+ * objects and kept for the lifetime of the adapter, which should not outlive
+ * the directive call it was created for.
+ */
+final class FreemarkerModelAdapter extends AbstractMap<String, Object>
+{
+    /** Marker for variables resolved to <code>null</code> */
+    private static final Object NULL_VALUE = new Object(  );
+
+    private final Environment _env;
+    private final Map<String, Object> _mapValues;
+    private Set<String> _setKeys;
+    private Set<Map.Entry<String, Object>> _setEntries;
+
+    /**
+     * Constructor
+     * @param env the freemarker processing environment
+     */
+    FreemarkerModelAdapter( Environment env )
+    {
+        _env = env;
+        _mapValues = new HashMap<String, Object>(  );
+    }
+
+    @Override
+    public Object get( Object key )
+    {
+        if ( !( key instanceof String ) )
+        {
+            return null;
+        }
+        String strName = ( String ) key;
+        Object value = _mapValues.get( strName );
+        if ( value == null )
+        {
+            value = resolve( strName );
+            _mapValues.put( strName, value == null ? NULL_VALUE : value );
+        }
+        return value == NULL_VALUE ? null : value;
+    }
+
+    @Override
+    public boolean containsKey( Object key )
+    {
+        return get( key ) != null;
+    }
+
+    @Override
+    public int size(  )
+    {
+        return keySet(  ).size(  );
+    }
+
+    @Override
+    public boolean isEmpty(  )
+    {
+        return keySet(  ).isEmpty(  );
+    }
+
+    @Override
+    public Set<String> keySet(  )
+    {
+        if ( _setKeys == null )
+        {
+            try
+            {
+                @SuppressWarnings( "unchecked" )
+                Set<String> setKeys = _env.getKnownVariableNames(  );
+                _setKeys = Collections.unmodifiableSet( setKeys );
+            } catch ( TemplateModelException e )
+            {
+                throw new RuntimeException( e );
+            }
+        }
+        return _setKeys;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet(  )
+    {
+        if ( _setEntries == null )
+        {
+            _setEntries = new AbstractSet<Map.Entry<String, Object>>(  )
+            {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator(  )
+                {
+                    final Iterator<String> keys = keySet(  ).iterator(  );
+                    return new Iterator<Map.Entry<String, Object>>(  )
+                    {
+                        @Override
+                        public boolean hasNext(  )
+                        {
+                            return keys.hasNext(  );
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next(  )
+                        {
+                            String strName = keys.next(  );
+                            return new SimpleImmutableEntry<String, Object>( strName, get( strName ) );
+                        }
+
+                        @Override
+                        public void remove(  )
+                        {
+                            throw new UnsupportedOperationException(  );
+                        }
+                    };
+                }
+
+                @Override
+                public int size(  )
+                {
+                    return FreemarkerModelAdapter.this.size(  );
+                }
+            };
+        }
+        return _setEntries;
+    }
+
+    /**
+     * Resolve a variable from the environment
+     * @param strName the variable name
+     * @return the unwrapped value of the variable, or <code>null</code> if it is not defined
+     */
+    private Object resolve( String strName )
+    {
+        try
+        {
+            TemplateModel model = _env.getVariable( strName );
+            return model == null ? null : DeepUnwrap.permissiveUnwrap( model );
+        } catch ( TemplateModelException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.Map;
+
+/**
+ * Cache of rendered fragments, with a time to live per fragment
+ * 
+ * @see JadeFragmentCache
+ */
+public interface IJadeFragmentCache
+{
+    /**
+     * Get a fragment
+     * @param strKey the fragment key
+     * @return the fragment, or <code>null</code> if it is not cached or expired
+     */
+    String get( String strKey );
+
+    /**
+     * Store a fragment
+     * @param strKey the fragment key
+     * @param strContent the fragment
+     * @param nTtl the time to live of the fragment, in seconds
+     */
+    void put( String strKey, String strContent, int nTtl );
+
+    /**
+     * Render a file template once and serve the result from the cache until it expires
+     * @param strKey the fragment key
+     * @param nTtl the time to live of the fragment, in seconds
+     * @param strTemplate template path from the default template directory
+     * @return the rendered fragment
+     */
+    String render( String strKey, int nTtl, String strTemplate );
+
+    /**
+     * Render a file template once and serve the result from the cache until it expires
+     * @param strKey the fragment key
+     * @param nTtl the time to live of the fragment, in seconds
+     * @param strTemplate template path from the default template directory
+     * @param model the model of the template
+     * @return the rendered fragment
+     */
+    String render( String strKey, int nTtl, String strTemplate, Map<String, Object> model );
+
+    /**
+     * Remove a fragment
+     * @param strKey the fragment key
+     */
+    void invalidate( String strKey );
+
+    /**
+     * Remove all the fragments
+     */
+    void clear(  );
+}
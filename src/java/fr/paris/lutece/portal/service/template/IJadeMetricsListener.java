@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+/**
+ * Listener notified of the jade template service activity, to collect metrics.
+ * 
+ * Listeners are called on the rendering threads, concurrently, so implementations
+ * must be thread safe and fast. String templates are all reported under the name
+ * {@link #STRING_TEMPLATE}. Durations are in nanoseconds.
+ * @see JadeMetrics
+ */
+public interface IJadeMetricsListener
+{
+    /** Name under which String templates are reported */
+    String STRING_TEMPLATE = DelegatingStringTemplateLoader.TEMPLATE_NAME;
+
+    /**
+     * Called after a template lookup, including the compilation on a cache miss
+     * @param strTemplate the template name
+     * @param bCacheHit <code>true</code> if the compiled template was found in cache
+     * @param lDuration the lookup duration
+     */
+    void onLookup( String strTemplate, boolean bCacheHit, long lDuration );
+
+    /**
+     * Called after the compilation of a template
+     * @param strTemplate the template name
+     * @param lDuration the compilation duration
+     */
+    void onCompile( String strTemplate, long lDuration );
+
+    /**
+     * Called after the rendering of a template
+     * @param strTemplate the template name
+     * @param lDuration the rendering duration
+     * @param lOutputSize the number of characters written
+     */
+    void onRender( String strTemplate, long lDuration, long lOutputSize );
+}
@@ -33,7 +33,12 @@
  */
 package fr.paris.lutece.portal.service.template;
 
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 import fr.paris.lutece.util.html.HtmlTemplate;
 
@@ -82,10 +87,131 @@ public interface IJadeTemplateService
      * @return the processed template
      */
     HtmlTemplate loadTemplate( String templateData, Locale locale, Object model );
+
+    /**
+     * Load and process a jade template with the asynchronous executor
+     * @param strPath template directory
+     * @param strTemplate template path from the template directory
+     * @param locale the locale
+     * @param model the model
+     * @return the processed template, completed exceptionally if the processing fails
+     */
+    CompletableFuture<HtmlTemplate> loadTemplateAsync( String strPath, String strTemplate, Locale locale, Object model );
+
+    /**
+     * Process a jade template with the asynchronous executor
+     * @param templateData the template
+     * @param locale the locale
+     * @param model the model
+     * @return the processed template, completed exceptionally if the processing fails
+     */
+    CompletableFuture<HtmlTemplate> loadTemplateAsync( String templateData, Locale locale, Object model );
+
+    /**
+     * Load and process several jade templates concurrently, for example the independent
+     * fragments of a page, and wait for all of them
+     * @param listRequests the templates to process
+     * @return the processed templates, in the order of the requests
+     */
+    List<HtmlTemplate> loadTemplates( List<JadeTemplateRequest> listRequests );
+
+    /**
+     * Load and process a jade template, writing the result to a writer.
+     * Once the writer fails, the rest of the output is discarded and its first
+     * IOException is thrown, wrapped, when the processing is over.
+     * @param strPath template directory
+     * @param strTemplate template path from the template directory
+     * @param locale the locale
+     * @param model the model
+     * @param out the writer receiving the processed template
+     * @throws UncheckedIOException if the writer fails
+     */
+    void render( String strPath, String strTemplate, Locale locale, Object model, Writer out );
+
+    /**
+     * Process a jade template, writing the result to a writer.
+     * Once the writer fails, the rest of the output is discarded and its first
+     * IOException is thrown, wrapped, when the processing is over.
+     * @param templateData the template
+     * @param locale the locale
+     * @param model the model
+     * @param out the writer receiving the processed template
+     * @throws UncheckedIOException if the writer fails
+     */
+    void render( String templateData, Locale locale, Object model, Writer out );
+
+    /**
+     * Load and process a jade template, writing the result encoded in UTF-8 to a stream.
+     * The stream is flushed but not closed.
+     * Once the stream fails, the rest of the output is discarded and its first
+     * IOException is thrown, wrapped, when the processing is over.
+     * @param strPath template directory
+     * @param strTemplate template path from the template directory
+     * @param locale the locale
+     * @param model the model
+     * @param out the stream receiving the processed template
+     * @throws UncheckedIOException if the stream fails
+     */
+    void render( String strPath, String strTemplate, Locale locale, Object model, OutputStream out );
+
+    /**
+     * Process a jade template, writing the result encoded in UTF-8 to a stream.
+     * The stream is flushed but not closed.
+     * Once the stream fails, the rest of the output is discarded and its first
+     * IOException is thrown, wrapped, when the processing is over.
+     * @param templateData the template
+     * @param locale the locale
+     * @param model the model
+     * @param out the stream receiving the processed template
+     * @throws UncheckedIOException if the stream fails
+     */
+    void render( String templateData, Locale locale, Object model, OutputStream out );
+
+    /**
+     * Compile a jade template for a caller processing it many times, such as the
+     * static bodies of the freemarker directive
+     * @param templateData the template
+     * @return the compiled template
+     */
+    IJadeCompiledTemplate compile( String templateData );
+
+    /**
+     * Load a jade template once and process it with each model of a batch
+     * @param strPath template directory
+     * @param strTemplate template path from the template directory
+     * @param locale the locale
+     * @param models the models
+     * @param sink the receiver of the processed templates, in the order of the models
+     */
+    void renderBatch( String strPath, String strTemplate, Locale locale, Iterable<?> models, IJadeBatchSink sink );
     
+    /**
+     * Get the cache of rendered fragments
+     * @return the fragment cache
+     */
+    IJadeFragmentCache getFragmentCache(  );
+
+    /**
+     * Compile every jade template of the default path ahead of time
+     * @return the warm up report
+     */
+    JadeWarmUpReport warmUp(  );
+
+    /**
+     * Evict a template from the cache, along with the templates including or extending it
+     * @param strTemplatePath template path from the default template directory
+     */
+    void invalidate( String strTemplatePath );
+
     /**
      * Reset the template cache
      */
     void resetCache(  );
 
+    /**
+     * Release the resources of the engine, such as the template watcher thread.
+     * The engine can be initialized again afterwards.
+     */
+    void close(  );
+
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.FileNotFoundException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Template root serving templates registered in memory, used to override
+ * the templates of the other roots
+ */
+final class InMemoryTemplateRoot implements TemplateRoot
+{
+    private final ConcurrentMap<String, InMemoryTemplate> _mapTemplates = new ConcurrentHashMap<String, InMemoryTemplate>(  );
+    private long _lLastModified;
+
+    /**
+     * Register a template, replacing any template with the same name
+     * @param strName the template name
+     * @param strContent the template content
+     */
+    void put( String strName, String strContent )
+    {
+        _mapTemplates.put( strName, new InMemoryTemplate( strContent, nextLastModified(  ) ) );
+    }
+
+    /**
+     * Unregister a template
+     * @param strName the template name
+     */
+    void remove( String strName )
+    {
+        _mapTemplates.remove( strName );
+    }
+
+    @Override
+    public boolean exists( String strName )
+    {
+        return _mapTemplates.containsKey( strName );
+    }
+
+    @Override
+    public long getLastModified( String strName )
+    {
+        InMemoryTemplate template = _mapTemplates.get( strName );
+        return ( template == null ) ? 0 : template._lLastModified;
+    }
+
+    @Override
+    public Reader getReader( String strName ) throws FileNotFoundException
+    {
+        InMemoryTemplate template = _mapTemplates.get( strName );
+        if ( template == null )
+        {
+            throw new FileNotFoundException( "memory:" + strName );
+        }
+        return new StringReader( template._strContent );
+    }
+
+    /**
+     * Get a modification date, distinct from the previous ones so that replaced
+     * templates are always recompiled
+     * @return the modification date
+     */
+    private synchronized long nextLastModified(  )
+    {
+        _lLastModified = Math.max( System.currentTimeMillis(  ), _lLastModified + 1 );
+        return _lLastModified;
+    }
+
+    @Override
+    public String toString(  )
+    {
+        return "memory:";
+    }
+
+    /**
+     * Template registered in memory
+     */
+    private static final class InMemoryTemplate
+    {
+        private final String _strContent;
+        private final long _lLastModified;
+
+        /**
+         * Constructor
+         * @param strContent the template content
+         * @param lLastModified the registration date
+         */
+        InMemoryTemplate( String strContent, long lLastModified )
+        {
+            _strContent = strContent;
+            _lLastModified = lLastModified;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.Weigher;
+
+/**
+ * Cache of rendered fragments, for the parts of the pages rendering the same
+ * HTML for minutes, like menus or footers.
+ * 
+ * The cache is bounded by the total size of the fragments, evicting the least
+ * recently used ones, and each fragment expires after its own time to live.
+ * It is available to the jade templates as the <code>fragmentCache</code>
+ * shared variable :
+ * 
+ * <code>!= fragmentCache.render( 'menu_fr', 300, 'menu.jade', { 'categories' : categories } )</code>
+ * 
+ * and to freemarker templates through the <code>cacheKey</code> and <code>ttl</code>
+ * parameters of the {@link FreemarkerDirective}.
+ */
+public final class JadeFragmentCache implements IJadeFragmentCache
+{
+    /** Name of the jade shared variable holding the fragment cache */
+    public static final String SHARED_VARIABLE = "fragmentCache";
+
+    /** Default maximum total size of the fragments, in characters */
+    public static final long DEFAULT_MAX_SIZE = 4L << 20;
+
+    private final ConcurrentMap<String, Fragment> _mapFragments;
+    private final AbstractJadeTemplateService _templateService;
+
+    /**
+     * Constructor
+     * @param templateService the template service rendering the fragment templates
+     * @param lMaxSize the maximum total size of the fragments, in characters
+     */
+    JadeFragmentCache( AbstractJadeTemplateService templateService, long lMaxSize )
+    {
+        _templateService = templateService;
+        _mapFragments = new ConcurrentLinkedHashMap.Builder<String, Fragment>(  ).maximumWeightedCapacity( lMaxSize )
+                                                                                 .weigher( new Weigher<Fragment>(  )
+                {
+                    @Override
+                    public int weightOf( Fragment fragment )
+                    {
+                        return Math.max( 1, fragment._strContent.length(  ) );
+                    }
+                } ).build(  );
+    }
+
+    @Override
+    public String get( String strKey )
+    {
+        Fragment fragment = _mapFragments.get( strKey );
+        if ( fragment == null )
+        {
+            return null;
+        }
+        if ( ( fragment._lExpiration - System.nanoTime(  ) ) < 0 )
+        {
+            _mapFragments.remove( strKey, fragment );
+            return null;
+        }
+        return fragment._strContent;
+    }
+
+    @Override
+    public void put( String strKey, String strContent, int nTtl )
+    {
+        _mapFragments.put( strKey, new Fragment( strContent, System.nanoTime(  ) + TimeUnit.SECONDS.toNanos( nTtl ) ) );
+    }
+
+    @Override
+    public String render( String strKey, int nTtl, String strTemplate )
+    {
+        return render( strKey, nTtl, strTemplate, Collections.<String, Object>emptyMap(  ) );
+    }
+
+    @Override
+    public String render( String strKey, int nTtl, String strTemplate, Map<String, Object> model )
+    {
+        String strContent = get( strKey );
+        if ( strContent == null )
+        {
+            strContent = _templateService.renderFragment( strTemplate, model );
+            put( strKey, strContent, nTtl );
+        }
+        return strContent;
+    }
+
+    @Override
+    public void invalidate( String strKey )
+    {
+        _mapFragments.remove( strKey );
+    }
+
+    @Override
+    public void clear(  )
+    {
+        _mapFragments.clear(  );
+    }
+
+    /**
+     * Get the number of cached fragments
+     * @return the number of cached fragments, including the expired ones not evicted yet
+     */
+    int size(  )
+    {
+        return _mapFragments.size(  );
+    }
+
+    /**
+     * Cached fragment
+     */
+    private static final class Fragment
+    {
+        private final String _strContent;
+        private final long _lExpiration;
+
+        /**
+         * Constructor
+         * @param strContent the fragment
+         * @param lExpiration the expiration time, in nanoseconds
+         */
+        Fragment( String strContent, long lExpiration )
+        {
+            _strContent = strContent;
+            _lExpiration = lExpiration;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Default metrics listener, collecting per template counters and rendering time
+ * histograms. Recording a metric does not lock, so this listener can be kept
+ * enabled in production. The metrics can be exposed through JMX with {@link #registerMBean(String)}.
+ */
+public class JadeMetrics implements IJadeMetricsListener, JadeMetricsMXBean
+{
+    /** Default JMX object name */
+    public static final String DEFAULT_OBJECT_NAME = "fr.paris.lutece.portal.service.template:type=JadeMetrics";
+
+    private final ConcurrentMap<String, TemplateMetrics> _mapMetrics = new ConcurrentHashMap<String, TemplateMetrics>(  );
+
+    @Override
+    public void onLookup( String strTemplate, boolean bCacheHit, long lDuration )
+    {
+        TemplateMetrics metrics = getMetrics( strTemplate );
+        metrics._lookups.increment(  );
+        if ( bCacheHit )
+        {
+            metrics._cacheHits.increment(  );
+        }
+    }
+
+    @Override
+    public void onCompile( String strTemplate, long lDuration )
+    {
+        TemplateMetrics metrics = getMetrics( strTemplate );
+        metrics._compiles.increment(  );
+        metrics._compileTime.add( lDuration );
+    }
+
+    @Override
+    public void onRender( String strTemplate, long lDuration, long lOutputSize )
+    {
+        TemplateMetrics metrics = getMetrics( strTemplate );
+        metrics._renders.increment(  );
+        metrics._renderTime.add( lDuration );
+        metrics._renderLatencies.record( lDuration );
+        metrics._outputSize.add( lOutputSize );
+    }
+
+    /**
+     * Get the statistics of a template
+     * @param strTemplate the template name
+     * @return the statistics of the template, or <code>null</code> if it was not used
+     */
+    public JadeTemplateStatistics getTemplateStatistics( String strTemplate )
+    {
+        TemplateMetrics metrics = _mapMetrics.get( strTemplate );
+        return ( metrics == null ) ? null : metrics.getStatistics( strTemplate );
+    }
+
+    @Override
+    public List<JadeTemplateStatistics> getTemplateStatistics(  )
+    {
+        List<JadeTemplateStatistics> listStatistics = new ArrayList<JadeTemplateStatistics>( _mapMetrics.size(  ) );
+        for ( Map.Entry<String, TemplateMetrics> entry : _mapMetrics.entrySet(  ) )
+        {
+            listStatistics.add( entry.getValue(  ).getStatistics( entry.getKey(  ) ) );
+        }
+        Collections.sort( listStatistics, new Comparator<JadeTemplateStatistics>(  )
+            {
+                @Override
+                public int compare( JadeTemplateStatistics statistics1, JadeTemplateStatistics statistics2 )
+                {
+                    return Long.compare( statistics2.getRenderTime(  ), statistics1.getRenderTime(  ) );
+                }
+            } );
+        return listStatistics;
+    }
+
+    @Override
+    public void reset(  )
+    {
+        _mapMetrics.clear(  );
+    }
+
+    /**
+     * Register these metrics in the platform MBean server
+     * @param strObjectName the JMX object name, for example {@link #DEFAULT_OBJECT_NAME}
+     * @throws JMException if the registration fails
+     */
+    public void registerMBean( String strObjectName ) throws JMException
+    {
+        ManagementFactory.getPlatformMBeanServer(  ).registerMBean( this, new ObjectName( strObjectName ) );
+    }
+
+    /**
+     * Unregister these metrics from the platform MBean server
+     * @param strObjectName the JMX object name used to register them
+     * @throws JMException if the unregistration fails
+     */
+    public void unregisterMBean( String strObjectName ) throws JMException
+    {
+        ManagementFactory.getPlatformMBeanServer(  ).unregisterMBean( new ObjectName( strObjectName ) );
+    }
+
+    /**
+     * Get the metrics of a template, creating them if needed
+     * @param strTemplate the template name
+     * @return the metrics of the template
+     */
+    private TemplateMetrics getMetrics( String strTemplate )
+    {
+        TemplateMetrics metrics = _mapMetrics.get( strTemplate );
+        if ( metrics == null )
+        {
+            TemplateMetrics created = new TemplateMetrics(  );
+            metrics = _mapMetrics.putIfAbsent( strTemplate, created );
+            if ( metrics == null )
+            {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Metrics of a template
+     */
+    private static final class TemplateMetrics
+    {
+        private final LongAdder _lookups = new LongAdder(  );
+        private final LongAdder _cacheHits = new LongAdder(  );
+        private final LongAdder _compiles = new LongAdder(  );
+        private final LongAdder _compileTime = new LongAdder(  );
+        private final LongAdder _renders = new LongAdder(  );
+        private final LongAdder _renderTime = new LongAdder(  );
+        private final LongAdder _outputSize = new LongAdder(  );
+        private final LatencyHistogram _renderLatencies = new LatencyHistogram(  );
+
+        /**
+         * Take a snapshot of the metrics
+         * @param strTemplate the template name
+         * @return the statistics
+         */
+        JadeTemplateStatistics getStatistics( String strTemplate )
+        {
+            return new JadeTemplateStatistics( strTemplate, _lookups.sum(  ), _cacheHits.sum(  ), _compiles.sum(  ),
+                _compileTime.sum(  ), _renders.sum(  ), _renderTime.sum(  ), _renderLatencies.getPercentile( 50 ),
+                _renderLatencies.getPercentile( 99 ), _outputSize.sum(  ) );
+        }
+    }
+}
@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.NotSerializableException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.neuland.jade4j.parser.node.Node;
+
+/**
+ * Binary encoding of jade syntax trees.
+ * 
+ * Jade nodes are not serializable, so their fields are written through reflection.
+ * Only the types found in syntax trees are supported : jade parser classes, strings,
+ * boxed booleans and numbers, and the usual lists and maps. Shared references are
+ * preserved. Anything else makes the encoding fail with a {@link NotSerializableException}.
+ * The encoding depends on the jade4j internals, so it must only be decoded by the
+ * same jade4j version.
+ */
+final class JadeTemplateCodec
+{
+    private static final byte NULL = 0;
+    private static final byte REFERENCE = 1;
+    private static final byte STRING = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte INTEGER = 4;
+    private static final byte LONG = 5;
+    private static final byte LIST = 6;
+    private static final byte MAP = 7;
+    private static final byte OBJECT = 8;
+
+    /** Package of the classes of the syntax tree */
+    private static final String PARSER_PACKAGE = "de.neuland.jade4j.parser.";
+    /** Supported collection classes */
+    private static final Set<String> COLLECTION_CLASSES = new HashSet<String>( Arrays.asList( "java.util.LinkedList",
+                "java.util.ArrayList", "java.util.HashMap", "java.util.LinkedHashMap" ) );
+    /** Field order, declaration order not being guaranteed by reflection */
+    private static final Comparator<Field> FIELD_ORDER = new Comparator<Field>(  )
+        {
+            @Override
+            public int compare( Field field1, Field field2 )
+            {
+                return field1.getName(  ).compareTo( field2.getName(  ) );
+            }
+        };
+    private static final ConcurrentMap<Class<?>, List<Field>> _mapFields = new ConcurrentHashMap<Class<?>, List<Field>>(  );
+
+    private final Map<Object, Integer> _mapWritten = new IdentityHashMap<Object, Integer>(  );
+    private final List<Object> _listRead = new ArrayList<Object>(  );
+
+    /**
+     * Private constructor, one instance per encoding or decoding
+     */
+    private JadeTemplateCodec(  )
+    {
+    }
+
+    /**
+     * Encode a syntax tree
+     * @param rootNode the root node
+     * @param out the output
+     * @throws IOException if the tree cannot be encoded or written
+     */
+    static void write( Node rootNode, DataOutput out ) throws IOException
+    {
+        new JadeTemplateCodec(  ).writeValue( rootNode, out );
+    }
+
+    /**
+     * Decode a syntax tree
+     * @param in the input
+     * @return the root node
+     * @throws IOException if the tree cannot be read or decoded
+     */
+    static Node read( DataInput in ) throws IOException
+    {
+        Object root = new JadeTemplateCodec(  ).readValue( in );
+        if ( !( root instanceof Node ) )
+        {
+            throw new InvalidObjectException( "Not a jade syntax tree" );
+        }
+        return ( Node ) root;
+    }
+
+    /**
+     * Encode a value
+     * @param value the value
+     * @param out the output
+     * @throws IOException if the value cannot be encoded or written
+     */
+    private void writeValue( Object value, DataOutput out ) throws IOException
+    {
+        if ( value == null )
+        {
+            out.writeByte( NULL );
+        } else if ( value instanceof String )
+        {
+            out.writeByte( STRING );
+            writeString( ( String ) value, out );
+        } else if ( value instanceof Boolean )
+        {
+            out.writeByte( BOOLEAN );
+            out.writeBoolean( ( Boolean ) value );
+        } else if ( value instanceof Integer )
+        {
+            out.writeByte( INTEGER );
+            out.writeInt( ( Integer ) value );
+        } else if ( value instanceof Long )
+        {
+            out.writeByte( LONG );
+            out.writeLong( ( Long ) value );
+        } else if ( _mapWritten.containsKey( value ) )
+        {
+            out.writeByte( REFERENCE );
+            out.writeInt( _mapWritten.get( value ) );
+        } else
+        {
+            writeObject( value, out );
+        }
+    }
+
+    /**
+     * Encode a collection or a syntax tree object
+     * @param value the value
+     * @param out the output
+     * @throws IOException if the value cannot be encoded or written
+     */
+    private void writeObject( Object value, DataOutput out ) throws IOException
+    {
+        Class<?> valueClass = value.getClass(  );
+        String strClassName = valueClass.getName(  );
+        _mapWritten.put( value, _mapWritten.size(  ) );
+        if ( value instanceof List<?> && COLLECTION_CLASSES.contains( strClassName ) )
+        {
+            List<?> list = ( List<?> ) value;
+            out.writeByte( LIST );
+            out.writeUTF( strClassName );
+            out.writeInt( list.size(  ) );
+            for ( Object element : list )
+            {
+                writeValue( element, out );
+            }
+        } else if ( value instanceof Map<?, ?> && COLLECTION_CLASSES.contains( strClassName ) )
+        {
+            Map<?, ?> map = ( Map<?, ?> ) value;
+            out.writeByte( MAP );
+            out.writeUTF( strClassName );
+            out.writeInt( map.size(  ) );
+            for ( Map.Entry<?, ?> entry : map.entrySet(  ) )
+            {
+                writeValue( entry.getKey(  ), out );
+                writeValue( entry.getValue(  ), out );
+            }
+        } else if ( strClassName.startsWith( PARSER_PACKAGE ) )
+        {
+            out.writeByte( OBJECT );
+            out.writeUTF( strClassName );
+            try
+            {
+                for ( Field field : getFields( valueClass ) )
+                {
+                    Class<?> type = field.getType(  );
+                    if ( type == boolean.class )
+                    {
+                        out.writeBoolean( field.getBoolean( value ) );
+                    } else if ( type == int.class )
+                    {
+                        out.writeInt( field.getInt( value ) );
+                    } else if ( type == long.class )
+                    {
+                        out.writeLong( field.getLong( value ) );
+                    } else if ( type.isPrimitive(  ) )
+                    {
+                        throw new NotSerializableException( strClassName + "." + field.getName(  ) );
+                    } else
+                    {
+                        writeValue( field.get( value ), out );
+                    }
+                }
+            } catch ( IllegalAccessException e )
+            {
+                throw new IOException( e );
+            }
+        } else
+        {
+            throw new NotSerializableException( strClassName );
+        }
+    }
+
+    /**
+     * Decode a value
+     * @param in the input
+     * @return the value
+     * @throws IOException if the value cannot be read or decoded
+     */
+    private Object readValue( DataInput in ) throws IOException
+    {
+        byte type = in.readByte(  );
+        switch ( type )
+        {
+            case NULL:
+                return null;
+            case STRING:
+                return readString( in );
+            case BOOLEAN:
+                return in.readBoolean(  );
+            case INTEGER:
+                return in.readInt(  );
+            case LONG:
+                return in.readLong(  );
+            case REFERENCE:
+                int nReference = in.readInt(  );
+                if ( nReference < 0 || nReference >= _listRead.size(  ) )
+                {
+                    throw new InvalidObjectException( "Invalid reference " + nReference );
+                }
+                return _listRead.get( nReference );
+            case LIST:
+            case MAP:
+            case OBJECT:
+                return readObject( type, in );
+            default:
+                throw new InvalidObjectException( "Invalid type " + type );
+        }
+    }
+
+    /**
+     * Decode a collection or a syntax tree object
+     * @param type the value type
+     * @param in the input
+     * @return the value
+     * @throws IOException if the value cannot be read or decoded
+     */
+    @SuppressWarnings( "unchecked" )
+    private Object readObject( byte type, DataInput in ) throws IOException
+    {
+        String strClassName = in.readUTF(  );
+        if ( type == OBJECT ? !strClassName.startsWith( PARSER_PACKAGE ) : !COLLECTION_CLASSES.contains( strClassName ) )
+        {
+            throw new InvalidObjectException( "Unexpected class " + strClassName );
+        }
+        try
+        {
+            Class<?> valueClass = Class.forName( strClassName, false, Node.class.getClassLoader(  ) );
+            Object value = instantiate( valueClass );
+            _listRead.add( value );
+            if ( type == LIST )
+            {
+                List<Object> list = ( List<Object> ) value;
+                for ( int i = in.readInt(  ); i > 0; i-- )
+                {
+                    list.add( readValue( in ) );
+                }
+            } else if ( type == MAP )
+            {
+                Map<Object, Object> map = ( Map<Object, Object> ) value;
+                for ( int i = in.readInt(  ); i > 0; i-- )
+                {
+                    map.put( readValue( in ), readValue( in ) );
+                }
+            } else
+            {
+                for ( Field field : getFields( valueClass ) )
+                {
+                    Class<?> fieldType = field.getType(  );
+                    if ( fieldType == boolean.class )
+                    {
+                        field.setBoolean( value, in.readBoolean(  ) );
+                    } else if ( fieldType == int.class )
+                    {
+                        field.setInt( value, in.readInt(  ) );
+                    } else if ( fieldType == long.class )
+                    {
+                        field.setLong( value, in.readLong(  ) );
+                    } else
+                    {
+                        field.set( value, readValue( in ) );
+                    }
+                }
+            }
+            return value;
+        } catch ( ClassNotFoundException | IllegalAccessException | IllegalArgumentException | ClassCastException e )
+        {
+            throw new InvalidObjectException( "Unable to decode " + strClassName + " : " + e );
+        }
+    }
+
+    /**
+     * Create an empty instance of a class, through its simplest constructor
+     * @param valueClass the class
+     * @return the new instance
+     * @throws IOException if the class cannot be instantiated
+     */
+    private static Object instantiate( Class<?> valueClass ) throws IOException
+    {
+        Constructor<?> constructor = null;
+        for ( Constructor<?> candidate : valueClass.getDeclaredConstructors(  ) )
+        {
+            if ( constructor == null || candidate.getParameterTypes(  ).length < constructor.getParameterTypes(  ).length )
+            {
+                constructor = candidate;
+            }
+        }
+        if ( constructor == null || Modifier.isAbstract( valueClass.getModifiers(  ) ) )
+        {
+            throw new InvalidObjectException( "Unable to instantiate " + valueClass.getName(  ) );
+        }
+        Class<?>[] parameterTypes = constructor.getParameterTypes(  );
+        Object[] parameters = new Object[parameterTypes.length];
+        for ( int i = 0; i < parameterTypes.length; i++ )
+        {
+            if ( parameterTypes[i] == boolean.class )
+            {
+                parameters[i] = Boolean.FALSE;
+            } else if ( parameterTypes[i] == int.class )
+            {
+                parameters[i] = 0;
+            } else if ( parameterTypes[i].isPrimitive(  ) )
+            {
+                throw new InvalidObjectException( "Unable to instantiate " + valueClass.getName(  ) );
+            }
+        }
+        try
+        {
+            constructor.setAccessible( true );
+            return constructor.newInstance( parameters );
+        } catch ( InstantiationException | IllegalAccessException | InvocationTargetException e )
+        {
+            throw new InvalidObjectException( "Unable to instantiate " + valueClass.getName(  ) + " : " + e );
+        }
+    }
+
+    /**
+     * Get the instance fields of a class and its super classes
+     * @param valueClass the class
+     * @return the fields, in a stable order
+     */
+    private static List<Field> getFields( Class<?> valueClass )
+    {
+        List<Field> listFields = _mapFields.get( valueClass );
+        if ( listFields == null )
+        {
+            listFields = new ArrayList<Field>(  );
+            for ( Class<?> current = valueClass; current != Object.class; current = current.getSuperclass(  ) )
+            {
+                List<Field> listDeclaredFields = new ArrayList<Field>(  );
+                for ( Field field : current.getDeclaredFields(  ) )
+                {
+                    if ( !Modifier.isStatic( field.getModifiers(  ) ) && !field.isSynthetic(  ) )
+                    {
+                        field.setAccessible( true );
+                        listDeclaredFields.add( field );
+                    }
+                }
+                Collections.sort( listDeclaredFields, FIELD_ORDER );
+                listFields.addAll( listDeclaredFields );
+            }
+            listFields = Collections.unmodifiableList( listFields );
+            _mapFields.put( valueClass, listFields );
+        }
+        return listFields;
+    }
+
+    /**
+     * Write a string of any length
+     * @param strValue the string
+     * @param out the output
+     * @throws IOException if the string cannot be written
+     */
+    private static void writeString( String strValue, DataOutput out ) throws IOException
+    {
+        byte[] bytes = strValue.getBytes( StandardCharsets.UTF_8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+
+    /**
+     * Read a string written by {@link #writeString(String, DataOutput)}
+     * @param in the input
+     * @return the string
+     * @throws IOException if the string cannot be read
+     */
+    private static String readString( DataInput in ) throws IOException
+    {
+        int nLength = in.readInt(  );
+        if ( nLength < 0 )
+        {
+            throw new InvalidObjectException( "Invalid string length " + nLength );
+        }
+        byte[] bytes = new byte[nLength];
+        in.readFully( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+}
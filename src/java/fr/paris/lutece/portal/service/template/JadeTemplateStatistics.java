@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the metrics of a template. Durations are in nanoseconds.
+ */
+public final class JadeTemplateStatistics
+{
+    private final String _strTemplateName;
+    private final long _lLookupCount;
+    private final long _lCacheHitCount;
+    private final long _lCompileCount;
+    private final long _lCompileTime;
+    private final long _lRenderCount;
+    private final long _lRenderTime;
+    private final long _lRenderTimeMedian;
+    private final long _lRenderTime99thPercentile;
+    private final long _lOutputSize;
+
+    /**
+     * Constructor
+     * @param strTemplateName the template name
+     * @param lLookupCount the number of lookups
+     * @param lCacheHitCount the number of lookups served by the cache
+     * @param lCompileCount the number of compilations
+     * @param lCompileTime the total compilation time
+     * @param lRenderCount the number of renderings
+     * @param lRenderTime the total rendering time
+     * @param lRenderTimeMedian the median rendering time
+     * @param lRenderTime99thPercentile the 99th percentile of the rendering time
+     * @param lOutputSize the total number of characters rendered
+     */
+    @ConstructorProperties( { "templateName", "lookupCount", "cacheHitCount", "compileCount", "compileTime", "renderCount", "renderTime", "renderTimeMedian", "renderTime99thPercentile", "outputSize" } )
+    public JadeTemplateStatistics( String strTemplateName, long lLookupCount, long lCacheHitCount, long lCompileCount,
+        long lCompileTime, long lRenderCount, long lRenderTime, long lRenderTimeMedian, long lRenderTime99thPercentile,
+        long lOutputSize )
+    {
+        _strTemplateName = strTemplateName;
+        _lLookupCount = lLookupCount;
+        _lCacheHitCount = lCacheHitCount;
+        _lCompileCount = lCompileCount;
+        _lCompileTime = lCompileTime;
+        _lRenderCount = lRenderCount;
+        _lRenderTime = lRenderTime;
+        _lRenderTimeMedian = lRenderTimeMedian;
+        _lRenderTime99thPercentile = lRenderTime99thPercentile;
+        _lOutputSize = lOutputSize;
+    }
+
+    /**
+     * Get the template name
+     * @return the template name
+     */
+    public String getTemplateName(  )
+    {
+        return _strTemplateName;
+    }
+
+    /**
+     * Get the number of lookups
+     * @return the number of lookups
+     */
+    public long getLookupCount(  )
+    {
+        return _lLookupCount;
+    }
+
+    /**
+     * Get the number of lookups served by the cache
+     * @return the number of cache hits
+     */
+    public long getCacheHitCount(  )
+    {
+        return _lCacheHitCount;
+    }
+
+    /**
+     * Get the ratio of lookups served by the cache
+     * @return the cache hit ratio, between 0 and 1
+     */
+    public double getCacheHitRatio(  )
+    {
+        return ( _lLookupCount == 0 ) ? 0 : ( ( double ) _lCacheHitCount / _lLookupCount );
+    }
+
+    /**
+     * Get the number of compilations
+     * @return the number of compilations
+     */
+    public long getCompileCount(  )
+    {
+        return _lCompileCount;
+    }
+
+    /**
+     * Get the total compilation time
+     * @return the total compilation time
+     */
+    public long getCompileTime(  )
+    {
+        return _lCompileTime;
+    }
+
+    /**
+     * Get the number of renderings
+     * @return the number of renderings
+     */
+    public long getRenderCount(  )
+    {
+        return _lRenderCount;
+    }
+
+    /**
+     * Get the total rendering time
+     * @return the total rendering time
+     */
+    public long getRenderTime(  )
+    {
+        return _lRenderTime;
+    }
+
+    /**
+     * Get the median rendering time
+     * @return the median rendering time
+     */
+    public long getRenderTimeMedian(  )
+    {
+        return _lRenderTimeMedian;
+    }
+
+    /**
+     * Get the 99th percentile of the rendering time
+     * @return the 99th percentile of the rendering time
+     */
+    public long getRenderTime99thPercentile(  )
+    {
+        return _lRenderTime99thPercentile;
+    }
+
+    /**
+     * Get the total number of characters rendered
+     * @return the total output size
+     */
+    public long getOutputSize(  )
+    {
+        return _lOutputSize;
+    }
+
+    @Override
+    public String toString(  )
+    {
+        return _strTemplateName + " : " + _lRenderCount + " renderings in " + ( _lRenderTime / 1000000 ) + " ms, " +
+        _lCompileCount + " compilations in " + ( _lCompileTime / 1000000 ) + " ms, cache hit ratio " + getCacheHitRatio(  );
+    }
+}
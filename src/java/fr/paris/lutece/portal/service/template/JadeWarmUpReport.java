@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Result of a jade templates warm up
+ * @see IJadeTemplateService#warmUp()
+ */
+public final class JadeWarmUpReport
+{
+    private final int _nCompiled;
+    private final Map<String, Exception> _mapFailures;
+    private final long _lElapsedTime;
+
+    /**
+     * Constructor
+     * @param nCompiled number of templates successfully compiled
+     * @param mapFailures compilation failures, by template name
+     * @param lElapsedTime duration of the warm up, in milliseconds
+     */
+    JadeWarmUpReport( int nCompiled, Map<String, Exception> mapFailures, long lElapsedTime )
+    {
+        _nCompiled = nCompiled;
+        _mapFailures = Collections.unmodifiableMap( mapFailures );
+        _lElapsedTime = lElapsedTime;
+    }
+
+    /**
+     * Get the number of templates successfully compiled
+     * @return the number of templates successfully compiled
+     */
+    public int getCompiledCount(  )
+    {
+        return _nCompiled;
+    }
+
+    /**
+     * Get the compilation failures
+     * @return the compilation failures, by template name
+     */
+    public Map<String, Exception> getFailures(  )
+    {
+        return _mapFailures;
+    }
+
+    /**
+     * Get the duration of the warm up
+     * @return the duration of the warm up, in milliseconds
+     */
+    public long getElapsedTime(  )
+    {
+        return _lElapsedTime;
+    }
+
+    @Override
+    public String toString(  )
+    {
+        return "Jade warm up : " + _nCompiled + " templates compiled, " + _mapFailures.size(  ) + " failures in " +
+        _lElapsedTime + " ms";
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free latency histogram with logarithmic buckets.
+ * 
+ * Each power of two range is split into {@value #SUB_BUCKETS} linear sub buckets,
+ * so recorded values are kept with a relative precision of 12.5% over the whole
+ * range of long values, in a fixed amount of memory.
+ */
+final class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = ( 64 - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS;
+
+    private final AtomicLongArray _counts = new AtomicLongArray( BUCKETS );
+
+    /**
+     * Record a value
+     * @param lValue the value, negative values are recorded as 0
+     */
+    void record( long lValue )
+    {
+        _counts.incrementAndGet( getBucket( Math.max( 0, lValue ) ) );
+    }
+
+    /**
+     * Get the number of recorded values
+     * @return the number of recorded values
+     */
+    long getCount(  )
+    {
+        long lCount = 0;
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            lCount += _counts.get( i );
+        }
+        return lCount;
+    }
+
+    /**
+     * Get an approximation of a percentile of the recorded values
+     * @param dPercentile the percentile, between 0 and 100
+     * @return the lower bound of the bucket holding the percentile, 0 if no value was recorded
+     */
+    long getPercentile( double dPercentile )
+    {
+        long[] counts = new long[BUCKETS];
+        long lTotal = 0;
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            counts[i] = _counts.get( i );
+            lTotal += counts[i];
+        }
+        long lRank = ( long ) Math.ceil( ( dPercentile / 100 ) * lTotal );
+        long lSeen = 0;
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            lSeen += counts[i];
+            if ( lSeen > 0 && lSeen >= lRank )
+            {
+                return getLowerBound( i );
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get the bucket of a value
+     * @param lValue the value, positive
+     * @return the bucket index
+     */
+    static int getBucket( long lValue )
+    {
+        if ( lValue < SUB_BUCKETS )
+        {
+            return ( int ) lValue;
+        }
+        int nExponent = 63 - Long.numberOfLeadingZeros( lValue );
+        int nSubBucket = ( int ) ( lValue >>> ( nExponent - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 );
+        return ( ( nExponent - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS ) + nSubBucket;
+    }
+
+    /**
+     * Get the smallest value of a bucket
+     * @param nBucket the bucket index
+     * @return the smallest value of the bucket
+     */
+    static long getLowerBound( int nBucket )
+    {
+        if ( nBucket < SUB_BUCKETS )
+        {
+            return nBucket;
+        }
+        int nExponent = ( nBucket / SUB_BUCKETS ) + SUB_BUCKET_BITS - 1;
+        long lSubBucket = nBucket % SUB_BUCKETS;
+        return ( 1L << nExponent ) | ( lSubBucket << ( nExponent - SUB_BUCKET_BITS ) );
+    }
+}
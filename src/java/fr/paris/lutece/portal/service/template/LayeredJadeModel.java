@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import de.neuland.jade4j.filter.CDATAFilter;
+import de.neuland.jade4j.filter.CssFilter;
+import de.neuland.jade4j.filter.Filter;
+import de.neuland.jade4j.filter.JsFilter;
+import de.neuland.jade4j.model.JadeModel;
+
+/**
+ * Jade model looking variables up in layers instead of copying them : the variables
+ * set by the template itself first, then the request model, then the shared variables.
+ * 
+ * The filters are the default jade filters, shared by every model.
+ */
+final class LayeredJadeModel extends JadeModel
+{
+    private static final Map<String, Filter> FILTERS = new HashMap<String, Filter>(  );
+
+    static
+    {
+        FILTERS.put( "cdata", new CDATAFilter(  ) );
+        FILTERS.put( "js", new JsFilter(  ) );
+        FILTERS.put( "css", new CssFilter(  ) );
+    }
+
+    private final Map<String, Object> _model;
+    private final Map<String, Object> _sharedVariables;
+    private final Utf8OutputWriter _utf8Output;
+
+    /**
+     * Constructor
+     * @param model the request model
+     * @param sharedVariables the shared variables snapshot
+     * @param utf8Output the writer the template is rendered to, if it encodes the output in UTF-8
+     */
+    LayeredJadeModel( Map<String, Object> model, Map<String, Object> sharedVariables, Utf8OutputWriter utf8Output )
+    {
+        super( null );
+        _model = model;
+        _sharedVariables = sharedVariables;
+        _utf8Output = utf8Output;
+    }
+
+    /**
+     * Get the writer encoding the output, for the nodes writing pre-encoded segments
+     * @return the writer encoding the output in UTF-8, or <code>null</code>
+     */
+    Utf8OutputWriter getUtf8Output(  )
+    {
+        return _utf8Output;
+    }
+
+    @Override
+    public Object get( Object key )
+    {
+        // the super constructor stores the locals before the layers are set
+        if ( super.containsKey( key ) || _model == null )
+        {
+            return super.get( key );
+        }
+        if ( _model.containsKey( key ) )
+        {
+            return _model.get( key );
+        }
+        return _sharedVariables.get( key );
+    }
+
+    @Override
+    public boolean containsKey( Object key )
+    {
+        return super.containsKey( key ) || _model.containsKey( key ) || _sharedVariables.containsKey( key );
+    }
+
+    @Override
+    public Filter getFilter( String strName )
+    {
+        Filter filter = super.getFilter( strName );
+        return ( filter == null ) ? FILTERS.get( strName ) : filter;
+    }
+
+    @Override
+    public boolean containsValue( Object value )
+    {
+        return merge(  ).containsValue( value );
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet(  )
+    {
+        return merge(  ).entrySet(  );
+    }
+
+    @Override
+    public boolean isEmpty(  )
+    {
+        return super.isEmpty(  ) && _model.isEmpty(  ) && _sharedVariables.isEmpty(  );
+    }
+
+    @Override
+    public Set<String> keySet(  )
+    {
+        return merge(  ).keySet(  );
+    }
+
+    @Override
+    public int size(  )
+    {
+        return merge(  ).size(  );
+    }
+
+    @Override
+    public Collection<Object> values(  )
+    {
+        return merge(  ).values(  );
+    }
+
+    /**
+     * Copy the layers into a single map, for the rarely used operations on the whole model
+     * @return the visible variables
+     */
+    private Map<String, Object> merge(  )
+    {
+        Map<String, Object> mapMerged = new HashMap<String, Object>( _sharedVariables );
+        mapMerged.putAll( _model );
+        for ( String strKey : super.keySet(  ) )
+        {
+            mapMerged.put( strKey, super.get( strKey ) );
+        }
+        return mapMerged;
+    }
+}
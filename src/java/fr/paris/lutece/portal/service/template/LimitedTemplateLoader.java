@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import de.neuland.jade4j.template.TemplateLoader;
+
+/**
+ * Template loader enforcing the limits of a compilation : the size of each template
+ * source, and the compilation deadline, checked each time a source is read.
+ */
+final class LimitedTemplateLoader implements TemplateLoader
+{
+    private static final int BUFFER_SIZE = 4096;
+
+    private final TemplateLoader _templateLoader;
+    private final int _nMaxSourceSize;
+    private final long _lDeadline;
+    private final long _lMaxCompileTime;
+
+    /**
+     * Constructor
+     * @param templateLoader the template loader
+     * @param nMaxSourceSize the maximum number of characters of a template source, or 0 for no limit
+     * @param lMaxCompileTime the maximum duration of the compilation in milliseconds, or 0 for no limit
+     */
+    LimitedTemplateLoader( TemplateLoader templateLoader, int nMaxSourceSize, long lMaxCompileTime )
+    {
+        _templateLoader = templateLoader;
+        _nMaxSourceSize = nMaxSourceSize;
+        _lMaxCompileTime = lMaxCompileTime;
+        _lDeadline = System.nanoTime(  ) + ( lMaxCompileTime * 1000000L );
+    }
+
+    @Override
+    public long getLastModified( String strName ) throws IOException
+    {
+        return _templateLoader.getLastModified( strName );
+    }
+
+    @Override
+    public Reader getReader( String strName ) throws IOException
+    {
+        checkDeadline( strName );
+        if ( _nMaxSourceSize <= 0 )
+        {
+            return _templateLoader.getReader( strName );
+        }
+        // read ahead, jade swallows the exceptions thrown while it reads the source
+        StringBuilder sbSource = new StringBuilder(  );
+        char[] buffer = new char[BUFFER_SIZE];
+        try ( Reader reader = _templateLoader.getReader( strName ) )
+        {
+            for ( int nRead = reader.read( buffer ); nRead >= 0; nRead = reader.read( buffer ) )
+            {
+                sbSource.append( buffer, 0, nRead );
+                if ( sbSource.length(  ) > _nMaxSourceSize )
+                {
+                    throw new JadeLimitExceededException( "Jade template " + strName + " exceeds " + _nMaxSourceSize +
+                        " characters" );
+                }
+            }
+        }
+        return new StringReader( sbSource.toString(  ) );
+    }
+
+    /**
+     * Check that the compilation deadline is not reached
+     * @param strName the template being read
+     */
+    private void checkDeadline( String strName )
+    {
+        if ( _lMaxCompileTime > 0 && System.nanoTime(  ) - _lDeadline > 0 )
+        {
+            throw new JadeLimitExceededException( "Compilation of jade template " + strName + " exceeded " +
+                _lMaxCompileTime + " ms" );
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Resolves the localized variant of a template, following the resource bundle
+ * fallback chain : for the <code>fr_FR</code> locale, <code>page.jade</code> is served
+ * by <code>page_fr_FR.jade</code>, <code>page_fr.jade</code> or <code>page.jade</code>,
+ * the first one existing.
+ * 
+ * The variant resolved for each template and locale is cached, so that a localized
+ * lookup is a single hash lookup. Resolutions are checked again once their time to
+ * live elapsed, or as soon as one of its variants is invalidated.
+ */
+final class LocalizedTemplateResolver
+{
+    private static final char SEPARATOR = '_';
+    private static final char KEY_SEPARATOR = '\0';
+    /** Maximum number of locale suffixes of a variant : language, country and variant */
+    private static final int MAX_SUFFIXES = 3;
+
+    private final CompositeTemplateLoader _templateLoader;
+    private final ResolutionCache<String> _resolutions;
+
+    /**
+     * Constructor
+     * @param templateLoader the template loader holding the templates
+     * @param lResolutionTtl the time to live of the resolutions in milliseconds, negative to keep them until invalidated
+     * @param nMaxResolutions the maximum number of template and locale pairs whose resolution is kept
+     */
+    LocalizedTemplateResolver( CompositeTemplateLoader templateLoader, long lResolutionTtl, int nMaxResolutions )
+    {
+        _templateLoader = templateLoader;
+        _resolutions = new ResolutionCache<String>( lResolutionTtl, nMaxResolutions );
+    }
+
+    /**
+     * Get the variant of a template serving a locale
+     * @param strTemplatePath the template path
+     * @param locale the locale
+     * @return the path of the most specific existing variant, or the template path if there is no variant
+     */
+    String resolve( String strTemplatePath, Locale locale )
+    {
+        if ( locale == null || locale.getLanguage(  ).isEmpty(  ) )
+        {
+            return strTemplatePath;
+        }
+        String strKey = strTemplatePath + KEY_SEPARATOR + locale;
+        ResolutionCache.Resolution<String> resolution = _resolutions.get( strKey );
+        return ( resolution == null ) ? _resolutions.put( strKey, probe( strTemplatePath, locale ) ) : resolution.getValue(  );
+    }
+
+    /**
+     * Forget the resolutions of the templates a changed template may be a variant of
+     * @param strName the name of the added, changed or removed template
+     */
+    void invalidate( String strName )
+    {
+        int nDirectory = strName.lastIndexOf( '/' );
+        int nExtension = strName.lastIndexOf( '.' );
+        if ( nExtension <= nDirectory )
+        {
+            nExtension = strName.length(  );
+        }
+        String strBase = strName.substring( 0, nExtension );
+        String strExtension = strName.substring( nExtension );
+        _resolutions.invalidatePrefix( strName + KEY_SEPARATOR );
+        for ( int i = 0; i < MAX_SUFFIXES; i++ )
+        {
+            int nSuffix = strBase.lastIndexOf( SEPARATOR );
+            if ( nSuffix <= nDirectory )
+            {
+                break;
+            }
+            strBase = strBase.substring( 0, nSuffix );
+            _resolutions.invalidatePrefix( strBase + strExtension + KEY_SEPARATOR );
+        }
+    }
+
+    /**
+     * Forget all the resolutions
+     */
+    void clear(  )
+    {
+        _resolutions.clear(  );
+    }
+
+    /**
+     * Get the number of cached resolutions
+     * @return the number of cached resolutions
+     */
+    int getResolutionCount(  )
+    {
+        return _resolutions.size(  );
+    }
+
+    /**
+     * Search the variants of a template
+     * @param strTemplatePath the template path
+     * @param locale the locale
+     * @return the path of the most specific existing variant, or the template path if there is no variant
+     */
+    private String probe( String strTemplatePath, Locale locale )
+    {
+        for ( String strVariant : getVariants( strTemplatePath, locale ) )
+        {
+            if ( _templateLoader.resolve( strVariant ) != null )
+            {
+                return strVariant;
+            }
+        }
+        return strTemplatePath;
+    }
+
+    /**
+     * Get the localized variants of a template
+     * @param strTemplatePath the template path
+     * @param locale the locale
+     * @return the variant paths, from the most specific to the least specific
+     */
+    static List<String> getVariants( String strTemplatePath, Locale locale )
+    {
+        int nExtension = strTemplatePath.lastIndexOf( '.' );
+        if ( nExtension <= strTemplatePath.lastIndexOf( '/' ) )
+        {
+            nExtension = strTemplatePath.length(  );
+        }
+        String strBase = strTemplatePath.substring( 0, nExtension );
+        String strExtension = strTemplatePath.substring( nExtension );
+        List<String> listSuffixes = new ArrayList<String>( 3 );
+        String strSuffix = SEPARATOR + locale.getLanguage(  );
+        listSuffixes.add( strSuffix );
+        if ( !locale.getCountry(  ).isEmpty(  ) )
+        {
+            strSuffix += SEPARATOR + locale.getCountry(  );
+            listSuffixes.add( 0, strSuffix );
+            if ( !locale.getVariant(  ).isEmpty(  ) )
+            {
+                listSuffixes.add( 0, strSuffix + SEPARATOR + locale.getVariant(  ) );
+            }
+        }
+        List<String> listVariants = new ArrayList<String>( listSuffixes.size(  ) );
+        for ( String strVariantSuffix : listSuffixes )
+        {
+            listVariants.add( strBase + strVariantSuffix + strExtension );
+        }
+        return listVariants;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.Writer;
+
+/**
+ * Unsynchronized writer rendering to a reusable character buffer
+ * @see OutputBufferPool
+ */
+final class OutputBuffer extends Writer
+{
+    private final StringBuilder _sbBuffer;
+
+    /**
+     * Constructor
+     * @param nCapacity the initial capacity
+     */
+    OutputBuffer( int nCapacity )
+    {
+        _sbBuffer = new StringBuilder( nCapacity );
+    }
+
+    @Override
+    public void write( int c )
+    {
+        _sbBuffer.append( ( char ) c );
+    }
+
+    @Override
+    public void write( char[] cbuf, int off, int len )
+    {
+        _sbBuffer.append( cbuf, off, len );
+    }
+
+    @Override
+    public void write( String str )
+    {
+        _sbBuffer.append( str );
+    }
+
+    @Override
+    public void write( String str, int off, int len )
+    {
+        _sbBuffer.append( str, off, off + len );
+    }
+
+    @Override
+    public Writer append( CharSequence csq )
+    {
+        _sbBuffer.append( csq );
+        return this;
+    }
+
+    @Override
+    public void flush(  )
+    {
+        // nothing to flush
+    }
+
+    @Override
+    public void close(  )
+    {
+        // nothing to close
+    }
+
+    /**
+     * Get the number of characters written
+     * @return the number of characters written
+     */
+    int length(  )
+    {
+        return _sbBuffer.length(  );
+    }
+
+    /**
+     * Get the capacity of the buffer
+     * @return the capacity of the buffer
+     */
+    int capacity(  )
+    {
+        return _sbBuffer.capacity(  );
+    }
+
+    /**
+     * Make sure the buffer can hold a number of characters without growing
+     * @param nCapacity the number of characters
+     */
+    void ensureCapacity( int nCapacity )
+    {
+        _sbBuffer.ensureCapacity( nCapacity );
+    }
+
+    /**
+     * Empty the buffer, keeping its capacity
+     */
+    void reset(  )
+    {
+        _sbBuffer.setLength( 0 );
+    }
+
+    /**
+     * Get the written characters
+     * @return the written characters
+     */
+    CharSequence getContent(  )
+    {
+        return _sbBuffer;
+    }
+
+    @Override
+    public String toString(  )
+    {
+        return _sbBuffer.toString(  );
+    }
+}
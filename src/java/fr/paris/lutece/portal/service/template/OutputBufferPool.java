@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded pool of output buffers, so that rendering a page does not allocate
+ * and grow a new character array each time.
+ * 
+ * Buffers are not bound to threads : the pool holds a fixed number of slots,
+ * and a render finding no free buffer allocates one. Buffers grown beyond
+ * {@link #MAX_POOLED_CAPACITY} are not kept, to bound the retained memory.
+ */
+final class OutputBufferPool
+{
+    /** Capacity, in characters, above which buffers are not returned to the pool */
+    static final int MAX_POOLED_CAPACITY = 256 * 1024;
+
+    private final AtomicReferenceArray<OutputBuffer> _buffers;
+
+    /**
+     * Constructor
+     * @param nSize the maximum number of pooled buffers
+     */
+    OutputBufferPool( int nSize )
+    {
+        _buffers = new AtomicReferenceArray<OutputBuffer>( Math.max( 1, nSize ) );
+    }
+
+    /**
+     * Take a buffer from the pool, or allocate one
+     * @param nExpectedSize the expected number of characters to write
+     * @return an empty buffer able to hold the expected number of characters without growing
+     */
+    OutputBuffer acquire( int nExpectedSize )
+    {
+        int nStart = getStartSlot(  );
+        for ( int i = 0; i < _buffers.length(  ); i++ )
+        {
+            int nSlot = ( nStart + i ) % _buffers.length(  );
+            OutputBuffer buffer = _buffers.get( nSlot );
+            if ( buffer != null && _buffers.compareAndSet( nSlot, buffer, null ) )
+            {
+                buffer.ensureCapacity( nExpectedSize );
+                return buffer;
+            }
+        }
+        return new OutputBuffer( nExpectedSize );
+    }
+
+    /**
+     * Return a buffer to the pool
+     * @param buffer the buffer, which must not be used any more
+     */
+    void release( OutputBuffer buffer )
+    {
+        if ( buffer.capacity(  ) > MAX_POOLED_CAPACITY )
+        {
+            return;
+        }
+        buffer.reset(  );
+        int nStart = getStartSlot(  );
+        for ( int i = 0; i < _buffers.length(  ); i++ )
+        {
+            int nSlot = ( nStart + i ) % _buffers.length(  );
+            if ( _buffers.get( nSlot ) == null && _buffers.compareAndSet( nSlot, null, buffer ) )
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the first slot to try, spreading the threads over the slots
+     * @return the slot index
+     */
+    private int getStartSlot(  )
+    {
+        long lId = Thread.currentThread(  ).getId(  );
+        return ( int ) ( ( lId ^ ( lId >>> 16 ) ) % _buffers.length(  ) );
+    }
+}
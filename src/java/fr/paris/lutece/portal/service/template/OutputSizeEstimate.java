@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Output size estimate of a template, from its recent renderings, so that output
+ * buffers can be allocated near the right capacity.
+ * 
+ * The estimate follows a larger output immediately and decreases slowly after
+ * smaller ones, and the prediction adds a margin of 1/8 to it.
+ */
+final class OutputSizeEstimate
+{
+    /** Size predicted for a template never rendered */
+    static final int DEFAULT_SIZE = 4096;
+
+    private final AtomicInteger _nEstimate = new AtomicInteger( -1 );
+
+    /**
+     * Predict the output size of the template
+     * @return the predicted size, in characters
+     */
+    int predict(  )
+    {
+        int nEstimate = _nEstimate.get(  );
+        return ( nEstimate < 0 ) ? DEFAULT_SIZE : ( nEstimate + ( nEstimate >> 3 ) );
+    }
+
+    /**
+     * Record the output size of a rendering
+     * @param nSize the output size, in characters
+     */
+    void record( int nSize )
+    {
+        while ( true )
+        {
+            int nEstimate = _nEstimate.get(  );
+            int nNext = ( nSize >= nEstimate ) ? nSize : ( int ) ( ( ( 7L * nEstimate ) + nSize ) >> 3 );
+            if ( nNext == nEstimate || _nEstimate.compareAndSet( nEstimate, nNext ) )
+            {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.concurrent.ConcurrentMap;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+/**
+ * Predicts the output size of file templates from their recent renderings, keeping
+ * an {@link OutputSizeEstimate} per template path. Templates are keyed by path rather
+ * than by compiled template, so that the estimates do not keep evicted templates alive.
+ */
+final class OutputSizePredictor
+{
+    /** Size predicted for a template never rendered */
+    static final int DEFAULT_SIZE = OutputSizeEstimate.DEFAULT_SIZE;
+
+    private final ConcurrentMap<String, OutputSizeEstimate> _mapEstimates;
+
+    /**
+     * Constructor
+     * @param nMaxEntries the maximum number of templates tracked
+     */
+    OutputSizePredictor( int nMaxEntries )
+    {
+        _mapEstimates = new ConcurrentLinkedHashMap.Builder<String, OutputSizeEstimate>(  ).maximumWeightedCapacity( nMaxEntries ).build(  );
+    }
+
+    /**
+     * Predict the output size of a template
+     * @param strKey the template path
+     * @return the predicted size, in characters
+     */
+    int predict( String strKey )
+    {
+        OutputSizeEstimate estimate = _mapEstimates.get( strKey );
+        return ( estimate == null ) ? DEFAULT_SIZE : estimate.predict(  );
+    }
+
+    /**
+     * Record the output size of a rendering
+     * @param strKey the template path
+     * @param nSize the output size, in characters
+     */
+    void record( String strKey, int nSize )
+    {
+        getEstimate( strKey ).record( nSize );
+    }
+
+    /**
+     * Get the estimate of a template, created if needed
+     * @param strKey the template path
+     * @return the output size estimate of the template
+     */
+    OutputSizeEstimate getEstimate( String strKey )
+    {
+        OutputSizeEstimate estimate = _mapEstimates.get( strKey );
+        if ( estimate == null )
+        {
+            estimate = new OutputSizeEstimate(  );
+            OutputSizeEstimate previous = _mapEstimates.putIfAbsent( strKey, estimate );
+            if ( previous != null )
+            {
+                estimate = previous;
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Forget all the estimates
+     */
+    void clear(  )
+    {
+        _mapEstimates.clear(  );
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+import de.neuland.jade4j.JadeConfiguration;
+import de.neuland.jade4j.parser.node.Node;
+import de.neuland.jade4j.template.JadeTemplate;
+import de.neuland.jade4j.template.TemplateLoader;
+
+/**
+ * Template compiler keeping the compiled templates on disk.
+ * 
+ * Each compiled template is stored with the content hash of every template read
+ * to compile it. It is reused, by this JVM or the next ones, as long as none of
+ * these templates changed and the jade4j version, the version of this library and the compile
+ * options are the same, a library built outside of a maven release being identified by the hash
+ * of its classes; otherwise the template is compiled again by the delegate compiler and stored back.
+ * The hashes are computed from the sources as read by the compiler, so that a template modified
+ * during its compilation is never stored with the hash of its new content.
+ */
+final class PersistentTemplateCache implements TemplateCompiler
+{
+    private static final Logger _logger = Logger.getLogger( "lutece.jade" );
+
+    /** Format of the cache files */
+    private static final int MAGIC = 0x4a414445;
+    private static final int FORMAT_VERSION = 1;
+    private static final String FILE_SUFFIX = ".jadec";
+    private static final String JADE4J_POM_PROPERTIES = "/META-INF/maven/de.neuland-bfi/jade4j/pom.properties";
+    private static final String LIBRARY_POM_PROPERTIES = "/META-INF/maven/fr.paris.lutece.plugins/library-jade/pom.properties";
+    private static final String SNAPSHOT_SUFFIX = "-SNAPSHOT";
+
+    private final Path _directory;
+    private final JadeConfiguration _jadeConfiguration;
+    private final TemplateCompiler _delegate;
+    private final String _strVersion;
+    private final AtomicBoolean _bLoadFailureReported = new AtomicBoolean(  );
+    private final AtomicBoolean _bStoreFailureReported = new AtomicBoolean(  );
+
+    /**
+     * Constructor
+     * @param directory the cache directory
+     * @param jadeConfiguration the jade configuration the templates are compiled for
+     * @param delegate the compiler used when a template is not found on disk
+     * @throws IOException if the cache directory cannot be created or the library versions cannot be determined
+     */
+    PersistentTemplateCache( Path directory, JadeConfiguration jadeConfiguration, TemplateCompiler delegate ) throws IOException
+    {
+        this( directory, jadeConfiguration, delegate, "" );
+    }
+
+    /**
+     * Constructor
+     * @param directory the cache directory
+     * @param jadeConfiguration the jade configuration the templates are compiled for
+     * @param delegate the compiler used when a template is not found on disk
+     * @param strOptions the options of the delegate compiler changing the compiled templates
+     * @throws IOException if the cache directory cannot be created or the library versions cannot be determined
+     */
+    PersistentTemplateCache( Path directory, JadeConfiguration jadeConfiguration, TemplateCompiler delegate, String strOptions )
+        throws IOException
+    {
+        _directory = directory;
+        _jadeConfiguration = jadeConfiguration;
+        _delegate = delegate;
+        _strVersion = getVersion( JadeConfiguration.class, JADE4J_POM_PROPERTIES ) + "/" +
+            getVersion( PersistentTemplateCache.class, LIBRARY_POM_PROPERTIES ) + strOptions;
+        Files.createDirectories( directory );
+    }
+
+    @Override
+    public JadeTemplate compile( String strName, TemplateLoader templateLoader ) throws IOException
+    {
+        JadeTemplate template = load( strName, templateLoader );
+        if ( template == null )
+        {
+            RecordingTemplateLoader recordingLoader = new RecordingTemplateLoader( templateLoader, true );
+            template = _delegate.compile( strName, recordingLoader );
+            if ( !recordingLoader.hasChangedSources(  ) )
+            {
+                store( strName, recordingLoader, template );
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Load a compiled template from disk
+     * @param strName the template name
+     * @param templateLoader the template loader, used to check that the templates did not change
+     * @return the compiled template, or <code>null</code> if it is missing or outdated
+     */
+    private JadeTemplate load( String strName, TemplateLoader templateLoader )
+    {
+        Path file = getFile( strName );
+        if ( !Files.isRegularFile( file ) )
+        {
+            return null;
+        }
+        try ( DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( file ) ) ) )
+        {
+            if ( in.readInt(  ) != MAGIC || in.readInt(  ) != FORMAT_VERSION || !_strVersion.equals( in.readUTF(  ) ) ||
+                    !strName.equals( in.readUTF(  ) ) )
+            {
+                return null;
+            }
+            for ( int i = in.readInt(  ); i > 0; i-- )
+            {
+                String strSource = in.readUTF(  );
+                String strHash = in.readUTF(  );
+                if ( !strHash.equals( hash( templateLoader, strSource ) ) )
+                {
+                    return null;
+                }
+            }
+            Node rootNode = JadeTemplateCodec.read( in );
+            JadeTemplate template = new JadeTemplate(  );
+            template.setTemplateLoader( _jadeConfiguration.getTemplateLoader(  ) );
+            template.setRootNode( rootNode );
+            template.setPrettyPrint( _jadeConfiguration.isPrettyPrint(  ) );
+            template.setMode( _jadeConfiguration.getMode(  ) );
+            return template;
+        } catch ( IOException | RuntimeException e )
+        {
+            report( _bLoadFailureReported, "Ignoring the persisted jade template " + file, e );
+            return null;
+        }
+    }
+
+    /**
+     * Store a compiled template on disk
+     * @param strName the template name
+     * @param templateLoader the loader used to compile the template, with the captured sources
+     * @param template the compiled template
+     */
+    private void store( String strName, RecordingTemplateLoader templateLoader, JadeTemplate template )
+    {
+        Path file = getFile( strName );
+        Path tmpFile = null;
+        try
+        {
+            Map<String, String> mapHashes = new LinkedHashMap<String, String>(  );
+            for ( Map.Entry<String, String> source : templateLoader.getSources(  ).entrySet(  ) )
+            {
+                mapHashes.put( source.getKey(  ), digest( source.getValue(  ).getBytes( StandardCharsets.UTF_8 ) ) );
+            }
+            tmpFile = Files.createTempFile( _directory, null, null );
+            try ( OutputStream os = Files.newOutputStream( tmpFile );
+                    DataOutputStream out = new DataOutputStream( new BufferedOutputStream( os ) ) )
+            {
+                out.writeInt( MAGIC );
+                out.writeInt( FORMAT_VERSION );
+                out.writeUTF( _strVersion );
+                out.writeUTF( strName );
+                out.writeInt( mapHashes.size(  ) );
+                for ( Map.Entry<String, String> entry : mapHashes.entrySet(  ) )
+                {
+                    out.writeUTF( entry.getKey(  ) );
+                    out.writeUTF( entry.getValue(  ) );
+                }
+                JadeTemplateCodec.write( template.getRootNode(  ), out );
+            }
+            try
+            {
+                Files.move( tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            } catch ( AtomicMoveNotSupportedException e )
+            {
+                Files.move( tmpFile, file, StandardCopyOption.REPLACE_EXISTING );
+            }
+        } catch ( IOException | RuntimeException e )
+        {
+            report( _bStoreFailureReported, "Unable to persist the jade template " + strName, e );
+            if ( tmpFile != null )
+            {
+                try
+                {
+                    Files.deleteIfExists( tmpFile );
+                } catch ( IOException ex )
+                {
+                    _logger.debug( "Unable to delete " + tmpFile, ex );
+                }
+            }
+        }
+    }
+
+    /**
+     * Log a failure, as a warning the first time so that a cache that never works is noticed
+     * @param bReported the flag recording that this kind of failure was reported
+     * @param strMessage the message
+     * @param e the failure
+     */
+    private static void report( AtomicBoolean bReported, String strMessage, Exception e )
+    {
+        if ( bReported.compareAndSet( false, true ) )
+        {
+            _logger.warn( strMessage + ", further failures are logged at debug level", e );
+        } else
+        {
+            _logger.debug( strMessage, e );
+        }
+    }
+
+    /**
+     * Get the cache file of a template
+     * @param strName the template name
+     * @return the cache file
+     */
+    private Path getFile( String strName )
+    {
+        return _directory.resolve( digest( strName.getBytes( StandardCharsets.UTF_8 ) ) + FILE_SUFFIX );
+    }
+
+    /**
+     * Compute the content hash of a template
+     * @param templateLoader the template loader
+     * @param strName the template name
+     * @return the content hash
+     * @throws IOException if the template cannot be read
+     */
+    private static String hash( TemplateLoader templateLoader, String strName ) throws IOException
+    {
+        StringBuilder sbContent = new StringBuilder(  );
+        char[] buffer = new char[4096];
+        try ( Reader reader = templateLoader.getReader( strName ) )
+        {
+            for ( int nRead = reader.read( buffer ); nRead >= 0; nRead = reader.read( buffer ) )
+            {
+                sbContent.append( buffer, 0, nRead );
+            }
+        }
+        return digest( sbContent.toString(  ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Compute a hexadecimal SHA-1 digest
+     * @param bytes the data
+     * @return the digest
+     */
+    private static String digest( byte[] bytes )
+    {
+        return toHex( newDigest(  ).digest( bytes ) );
+    }
+
+    /**
+     * Create a SHA-1 digest
+     * @return the digest
+     */
+    private static MessageDigest newDigest(  )
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-1" );
+        } catch ( NoSuchAlgorithmException e )
+        {
+            // should not happen
+            throw new RuntimeException( e );
+        }
+    }
+
+    /**
+     * Format a digest in hexadecimal
+     * @param digest the digest
+     * @return the hexadecimal digest
+     */
+    private static String toHex( byte[] digest )
+    {
+        StringBuilder sbDigest = new StringBuilder(  );
+        for ( byte b : digest )
+        {
+            sbDigest.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return sbDigest.toString(  );
+    }
+
+    /**
+     * Get the version of a library, the syntax tree encoding depending on jade4j and on this library.
+     * When the library is not a maven release, for example a snapshot or classes built by an IDE,
+     * its version is the hash of its classes, so that two different builds never share their compiled templates.
+     * @param libraryClass a class of the library
+     * @param strPomProperties the maven properties resource of the library
+     * @return the library version
+     * @throws IOException if the version cannot be determined
+     */
+    static String getVersion( Class<?> libraryClass, String strPomProperties ) throws IOException
+    {
+        Properties properties = new Properties(  );
+        try ( InputStream in = libraryClass.getResourceAsStream( strPomProperties ) )
+        {
+            if ( in != null )
+            {
+                properties.load( in );
+            }
+        }
+        String strVersion = properties.getProperty( "version" );
+        if ( strVersion == null || strVersion.endsWith( SNAPSHOT_SUFFIX ) )
+        {
+            return hashCodeSource( libraryClass );
+        }
+        return strVersion;
+    }
+
+    /**
+     * Compute the content hash of the jar or of the class directory of a library
+     * @param libraryClass a class of the library
+     * @return the content hash
+     * @throws IOException if the classes of the library cannot be read
+     */
+    private static String hashCodeSource( Class<?> libraryClass ) throws IOException
+    {
+        CodeSource codeSource = libraryClass.getProtectionDomain(  ).getCodeSource(  );
+        Path location;
+        try
+        {
+            location = Paths.get( codeSource.getLocation(  ).toURI(  ) );
+        } catch ( URISyntaxException | RuntimeException e )
+        {
+            // no code source, or classes not loaded from the file system
+            throw new IOException( "Unable to determine the version of " + libraryClass.getName(  ), e );
+        }
+        MessageDigest digest = newDigest(  );
+        if ( Files.isDirectory( location ) )
+        {
+            final List<Path> listFiles = new ArrayList<Path>(  );
+            Files.walkFileTree( location, new SimpleFileVisitor<Path>(  )
+                {
+                    @Override
+                    public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+                    {
+                        listFiles.add( file );
+                        return FileVisitResult.CONTINUE;
+                    }
+                } );
+            Collections.sort( listFiles );
+            for ( Path file : listFiles )
+            {
+                digest.update( location.relativize( file ).toString(  ).getBytes( StandardCharsets.UTF_8 ) );
+                update( digest, file );
+            }
+        } else
+        {
+            update( digest, location );
+        }
+        return toHex( digest.digest(  ) );
+    }
+
+    /**
+     * Add the content of a file to a digest
+     * @param digest the digest
+     * @param file the file
+     * @throws IOException if the file cannot be read
+     */
+    private static void update( MessageDigest digest, Path file ) throws IOException
+    {
+        byte[] buffer = new byte[8192];
+        try ( InputStream in = Files.newInputStream( file ) )
+        {
+            for ( int nRead = in.read( buffer ); nRead >= 0; nRead = in.read( buffer ) )
+            {
+                digest.update( buffer, 0, nRead );
+            }
+        }
+    }
+}
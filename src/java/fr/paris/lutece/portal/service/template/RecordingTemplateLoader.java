@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.neuland.jade4j.template.TemplateLoader;
+
+/**
+ * Template loader recording the names of the templates read through it.
+ * 
+ * Used for a single compilation, to find the templates included or extended
+ * by the compiled template. The names are recorded before the templates are read,
+ * and can be checked by other threads while the compilation is in progress. The sources can also be captured as they are read,
+ * to know the exact content the template was compiled from.
+ */
+final class RecordingTemplateLoader implements TemplateLoader
+{
+    private final TemplateLoader _delegate;
+    private final Set<String> _setNames;
+    private final Map<String, String> _mapSources;
+    private boolean _bChangedSources;
+
+    /**
+     * Constructor
+     * @param delegate the template loader to delegate to
+     */
+    RecordingTemplateLoader( TemplateLoader delegate )
+    {
+        this( delegate, false );
+    }
+
+    /**
+     * Constructor
+     * @param delegate the template loader to delegate to
+     * @param bCaptureSources <code>true</code> to keep the content of the templates read
+     */
+    RecordingTemplateLoader( TemplateLoader delegate, boolean bCaptureSources )
+    {
+        _delegate = delegate;
+        _setNames = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>(  ) );
+        _mapSources = bCaptureSources ? new LinkedHashMap<String, String>(  ) : null;
+    }
+
+    @Override
+    public long getLastModified( String name ) throws IOException
+    {
+        return _delegate.getLastModified( name );
+    }
+
+    @Override
+    public Reader getReader( String name ) throws IOException
+    {
+        _setNames.add( name );
+        if ( _mapSources == null )
+        {
+            return _delegate.getReader( name );
+        }
+        String strSource = read( name );
+        String strPrevious = _mapSources.put( name, strSource );
+        if ( strPrevious != null && !strPrevious.equals( strSource ) )
+        {
+            // read several times while it was being modified
+            _bChangedSources = true;
+        }
+        return new StringReader( strSource );
+    }
+
+    /**
+     * Read a whole template
+     * @param name the template name
+     * @return the template content
+     * @throws IOException if the template cannot be read
+     */
+    private String read( String name ) throws IOException
+    {
+        StringBuilder sbContent = new StringBuilder(  );
+        char[] buffer = new char[4096];
+        try ( Reader reader = _delegate.getReader( name ) )
+        {
+            for ( int nRead = reader.read( buffer ); nRead >= 0; nRead = reader.read( buffer ) )
+            {
+                sbContent.append( buffer, 0, nRead );
+            }
+        }
+        return sbContent.toString(  );
+    }
+
+    /**
+     * Get the content of the templates read, when captured
+     * @return the content of the templates read, by name
+     */
+    Map<String, String> getSources(  )
+    {
+        return Collections.unmodifiableMap( _mapSources );
+    }
+
+    /**
+     * Check if a template was read several times with different contents
+     * @return <code>true</code> if the captured sources are not consistent
+     */
+    boolean hasChangedSources(  )
+    {
+        return _bChangedSources;
+    }
+
+    /**
+     * Check if a template was read
+     * @param strName the template name
+     * @return <code>true</code> if the template was read, or is being read
+     */
+    boolean hasRead( String strName )
+    {
+        return _setNames.contains( strName );
+    }
+
+    /**
+     * Get the names of the templates read
+     * @return the names of the templates read
+     */
+    Set<String> getNames(  )
+    {
+        return Collections.unmodifiableSet( _setNames );
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentMap;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+/**
+ * Cache of template resolutions, such as the root holding a template or the
+ * variant serving a locale, so that a resolution is a hash lookup instead of
+ * probing the file system. A resolution may be <code>null</code>, for example when
+ * no root holds the template. Resolutions expire once their time to live elapsed,
+ * and the least recently used ones are evicted beyond the maximum number of entries,
+ * so that names probed once, like mistyped or crawled paths, do not accumulate.
+ * 
+ * @param <V> the type of the resolutions
+ */
+final class ResolutionCache<V>
+{
+    /** Default maximum number of resolutions */
+    static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private final long _lTtl;
+    private final ConcurrentMap<String, Resolution<V>> _mapResolutions;
+
+    /**
+     * Constructor
+     * @param lTtl the time to live of the resolutions in milliseconds, negative to keep them until invalidated
+     * @param nMaxEntries the maximum number of resolutions
+     */
+    ResolutionCache( long lTtl, int nMaxEntries )
+    {
+        _lTtl = lTtl;
+        _mapResolutions = new ConcurrentLinkedHashMap.Builder<String, Resolution<V>>(  ).maximumWeightedCapacity( Math.max(
+                    nMaxEntries, 1 ) ).build(  );
+    }
+
+    /**
+     * Get a resolution
+     * @param strKey the resolved key
+     * @return the resolution, or <code>null</code> if it is not cached or expired
+     */
+    Resolution<V> get( String strKey )
+    {
+        Resolution<V> resolution = _mapResolutions.get( strKey );
+        if ( resolution != null && _lTtl >= 0 && System.currentTimeMillis(  ) >= resolution._lExpiration )
+        {
+            _mapResolutions.remove( strKey, resolution );
+            return null;
+        }
+        return resolution;
+    }
+
+    /**
+     * Store a resolution
+     * @param strKey the resolved key
+     * @param value the resolution, possibly <code>null</code>
+     * @return the resolution
+     */
+    V put( String strKey, V value )
+    {
+        long lExpiration = ( _lTtl < 0 ) ? 0 : ( System.currentTimeMillis(  ) + _lTtl );
+        _mapResolutions.put( strKey, new Resolution<V>( value, lExpiration ) );
+        return value;
+    }
+
+    /**
+     * Forget a resolution
+     * @param strKey the resolved key
+     */
+    void invalidate( String strKey )
+    {
+        _mapResolutions.remove( strKey );
+    }
+
+    /**
+     * Forget the resolutions of the keys starting with a prefix
+     * @param strPrefix the prefix of the resolved keys
+     */
+    void invalidatePrefix( String strPrefix )
+    {
+        for ( Iterator<String> keys = _mapResolutions.keySet(  ).iterator(  ); keys.hasNext(  ); )
+        {
+            if ( keys.next(  ).startsWith( strPrefix ) )
+            {
+                keys.remove(  );
+            }
+        }
+    }
+
+    /**
+     * Forget all the resolutions
+     */
+    void clear(  )
+    {
+        _mapResolutions.clear(  );
+    }
+
+    /**
+     * Get the number of cached resolutions
+     * @return the number of cached resolutions, including the expired ones not evicted yet
+     */
+    int size(  )
+    {
+        return _mapResolutions.size(  );
+    }
+
+    /**
+     * Cached resolution
+     * @param <V> the type of the resolution
+     */
+    static final class Resolution<V>
+    {
+        private final V _value;
+        private final long _lExpiration;
+
+        /**
+         * Constructor
+         * @param value the resolution
+         * @param lExpiration the expiration date
+         */
+        Resolution( V value, long lExpiration )
+        {
+            _value = value;
+            _lExpiration = lExpiration;
+        }
+
+        /**
+         * Get the resolution
+         * @return the resolution, possibly <code>null</code>
+         */
+        V getValue(  )
+        {
+            return _value;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.ListIterator;
+
+import de.neuland.jade4j.parser.node.LiteralNode;
+import de.neuland.jade4j.parser.node.Node;
+import de.neuland.jade4j.parser.node.TextNode;
+import de.neuland.jade4j.template.JadeTemplate;
+
+/**
+ * Replaces the literal nodes of a compiled template, like the static segments produced
+ * by {@link StaticSegmentFolder}, by nodes keeping their text encoded in UTF-8.
+ */
+final class SegmentEncoder
+{
+    /**
+     * Private constructor
+     */
+    private SegmentEncoder(  )
+    {
+    }
+
+    /**
+     * Encode the literal nodes of a template
+     * @param template the compiled template
+     */
+    static void encode( JadeTemplate template )
+    {
+        if ( template.getRootNode(  ) != null )
+        {
+            encode( template.getRootNode(  ) );
+        }
+    }
+
+    /**
+     * Encode the literal nodes of a node and its children
+     * @param node the node
+     */
+    private static void encode( Node node )
+    {
+        if ( !( node instanceof TextNode ) && node.getNodes(  ) != null )
+        {
+            for ( ListIterator<Node> iterator = node.getNodes(  ).listIterator(  ); iterator.hasNext(  ); )
+            {
+                Node child = iterator.next(  );
+                if ( child.getClass(  ) == LiteralNode.class && child.getValue(  ) != null )
+                {
+                    iterator.set( new EncodedLiteralNode( ( LiteralNode ) child ) );
+                }
+            }
+        }
+        for ( Node child : TemplateNodes.getChildren( node ) )
+        {
+            encode( child );
+        }
+    }
+}
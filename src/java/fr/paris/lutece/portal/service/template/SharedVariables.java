@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Variables shared by every template, held as an immutable snapshot.
+ * 
+ * Renderings read the current snapshot without locking nor copying it, and updates
+ * replace the snapshot with a modified copy, so a rendering sees either all or none
+ * of an update, even while other threads update the variables.
+ */
+final class SharedVariables
+{
+    private final AtomicReference<Map<String, Object>> _snapshot = new AtomicReference<Map<String, Object>>( Collections.<String, Object>emptyMap(  ) );
+
+    /**
+     * Get the current variables
+     * @return an immutable snapshot of the variables
+     */
+    Map<String, Object> getSnapshot(  )
+    {
+        return _snapshot.get(  );
+    }
+
+    /**
+     * Set a variable
+     * @param strName the variable name
+     * @param value the variable value
+     */
+    void put( String strName, Object value )
+    {
+        while ( true )
+        {
+            Map<String, Object> current = _snapshot.get(  );
+            Map<String, Object> updated = new HashMap<String, Object>( current );
+            updated.put( strName, value );
+            if ( _snapshot.compareAndSet( current, Collections.unmodifiableMap( updated ) ) )
+            {
+                return;
+            }
+        }
+    }
+}
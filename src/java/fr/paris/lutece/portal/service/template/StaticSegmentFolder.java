@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import de.neuland.jade4j.compiler.IndentWriter;
+import de.neuland.jade4j.exceptions.JadeException;
+import de.neuland.jade4j.model.JadeModel;
+import de.neuland.jade4j.parser.node.BlockNode;
+import de.neuland.jade4j.parser.node.DoctypeNode;
+import de.neuland.jade4j.parser.node.LiteralNode;
+import de.neuland.jade4j.parser.node.Node;
+import de.neuland.jade4j.parser.node.TagNode;
+import de.neuland.jade4j.parser.node.TextNode;
+import de.neuland.jade4j.template.JadeTemplate;
+
+/**
+ * Folds the static parts of a compiled template.
+ * 
+ * Contiguous sibling nodes whose output does not depend on the model (plain text,
+ * tags with constant attributes and static content) are rendered once at compile time
+ * and replaced by a single literal node, so rendering only writes the resulting chunks
+ * and evaluates the dynamic nodes.
+ * 
+ * The output is only folded when it does not depend on the rendering state either :
+ * templates rendered with pretty print are left unchanged, since the indentation depends
+ * on the depth at which a node is rendered, and so are templates whose doctype is not
+ * their first node, since the doctype changes the way the tags are rendered.
+ */
+final class StaticSegmentFolder
+{
+    private static final String INTERPOLATION = "#{";
+    private static final String UNESCAPED_INTERPOLATION = "!{";
+
+    /**
+     * Private constructor
+     */
+    private StaticSegmentFolder(  )
+    {
+    }
+
+    /**
+     * Fold the static nodes of a template
+     * @param template the compiled template
+     */
+    static void fold( JadeTemplate template )
+    {
+        Node rootNode = template.getRootNode(  );
+        if ( template.isPrettyPrint(  ) || !( rootNode instanceof BlockNode ) )
+        {
+            return;
+        }
+        LinkedList<Node> listNodes = rootNode.getNodes(  );
+        int nDoctypes = countDoctypes( rootNode );
+        if ( nDoctypes > 1 || ( nDoctypes == 1 && !( listNodes.getFirst(  ) instanceof DoctypeNode ) ) )
+        {
+            return;
+        }
+        if ( nDoctypes == 1 && render( listNodes.getFirst(  ), template ) == null )
+        {
+            return;
+        }
+        // the doctype, if any, has set the mode of the template used to render the static nodes
+        foldChildren( rootNode, template );
+    }
+
+    /**
+     * Count the doctype nodes of a tree
+     * @param node the root of the tree
+     * @return the number of doctype nodes
+     */
+    private static int countDoctypes( Node node )
+    {
+        if ( node instanceof DoctypeNode )
+        {
+            return 1;
+        }
+        int nDoctypes = 0;
+        for ( Node child : TemplateNodes.getChildren( node ) )
+        {
+            nDoctypes += countDoctypes( child );
+        }
+        return nDoctypes;
+    }
+
+    /**
+     * Replace the runs of static children of a block by literal nodes, and fold the
+     * dynamic children recursively
+     * @param node the node
+     * @param template the template used to render the static nodes
+     */
+    private static void foldChildren( Node node, JadeTemplate template )
+    {
+        if ( node instanceof BlockNode )
+        {
+            LinkedList<Node> listFolded = new LinkedList<Node>(  );
+            List<Node> listRun = new LinkedList<Node>(  );
+            StringBuilder sbRun = new StringBuilder(  );
+            for ( Node child : node.getNodes(  ) )
+            {
+                String strOutput = ( isStatic( child ) && !isInjectionPoint( child ) ) ? render( child, template ) : null;
+                if ( strOutput != null )
+                {
+                    listRun.add( child );
+                    sbRun.append( strOutput );
+                    continue;
+                }
+                flush( listRun, sbRun, listFolded );
+                foldChildren( child, template );
+                listFolded.add( child );
+            }
+            flush( listRun, sbRun, listFolded );
+            node.setNodes( listFolded );
+        } else
+        {
+            for ( Node child : TemplateNodes.getChildren( node ) )
+            {
+                foldChildren( child, template );
+            }
+        }
+    }
+
+    /**
+     * Add a run of static nodes to the folded children, as a single literal node
+     * @param listRun the static nodes, cleared afterwards
+     * @param sbRun the output of the static nodes, cleared afterwards
+     * @param listFolded the folded children
+     */
+    private static void flush( List<Node> listRun, StringBuilder sbRun, List<Node> listFolded )
+    {
+        if ( listRun.size(  ) == 1 && listRun.get( 0 ) instanceof LiteralNode )
+        {
+            listFolded.add( listRun.get( 0 ) );
+        } else if ( !listRun.isEmpty(  ) )
+        {
+            Node first = listRun.get( 0 );
+            LiteralNode literal = new LiteralNode(  );
+            literal.setValue( sbRun.toString(  ) );
+            literal.setFileName( first.getFileName(  ) );
+            literal.setLineNumber( first.getLineNumber(  ) );
+            listFolded.add( literal );
+        }
+        listRun.clear(  );
+        sbRun.setLength( 0 );
+    }
+
+    /**
+     * Check if the output of a node does not depend on the model
+     * @param node the node
+     * @return <code>true</code> if the node can be rendered at compile time
+     */
+    private static boolean isStatic( Node node )
+    {
+        if ( node instanceof LiteralNode )
+        {
+            return true;
+        }
+        if ( node instanceof TextNode )
+        {
+            return isStatic( ( ( TextNode ) node ).getValue(  ) );
+        }
+        if ( node instanceof BlockNode )
+        {
+            BlockNode block = ( BlockNode ) node;
+            if ( block.isYield(  ) || block.getYieldBlock(  ) != null )
+            {
+                // injection point of an included block
+                return false;
+            }
+            for ( Node child : block.getNodes(  ) )
+            {
+                if ( !isStatic( child ) || isInjectionPoint( child ) )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if ( node.getClass(  ) == TagNode.class )
+        {
+            TagNode tag = ( TagNode ) node;
+            if ( !isStatic( tag.getName(  ) ) || tag.hasCodeNode(  ) )
+            {
+                return false;
+            }
+            for ( Object value : tag.getAttributes(  ).values(  ) )
+            {
+                if ( !( value instanceof Boolean ) && !( value instanceof String && isStatic( ( String ) value ) ) )
+                {
+                    return false;
+                }
+            }
+            return ( !tag.hasTextNode(  ) || isStatic( tag.getTextNode(  ) ) ) &&
+            ( tag.getBlock(  ) == null || isStatic( tag.getBlock(  ) ) );
+        }
+        return false;
+    }
+
+    /**
+     * Check if a child node may receive the block of a mixin call
+     * @param node the child node
+     * @return <code>true</code> if the node is an empty block, where mixin blocks are injected
+     */
+    private static boolean isInjectionPoint( Node node )
+    {
+        return node instanceof BlockNode && !node.hasNodes(  );
+    }
+
+    /**
+     * Check if a text is free of interpolations
+     * @param strText the text
+     * @return <code>true</code> if the text does not contain any interpolation
+     */
+    private static boolean isStatic( String strText )
+    {
+        return strText == null || ( !strText.contains( INTERPOLATION ) && !strText.contains( UNESCAPED_INTERPOLATION ) );
+    }
+
+    /**
+     * Render a node without model
+     * @param node the node
+     * @param template the template the node belongs to
+     * @return the output of the node, or <code>null</code> if it cannot be rendered at compile time
+     */
+    private static String render( Node node, JadeTemplate template )
+    {
+        StringWriter writer = new StringWriter(  );
+        try
+        {
+            node.execute( new IndentWriter( writer ), new JadeModel( Collections.<String, Object>emptyMap(  ) ), template );
+        } catch ( JadeException e )
+        {
+            return null;
+        }
+        return writer.toString(  );
+    }
+}
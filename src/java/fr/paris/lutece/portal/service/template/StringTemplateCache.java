@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.Map;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.Weigher;
+
+import de.neuland.jade4j.template.JadeTemplate;
+
+/**
+ * Cache of compiled String templates, keyed by the template content.
+ * 
+ * The template source itself is the key : lookups use the String hash and
+ * fall back to a full content comparison, so two different bodies can never
+ * share an entry. The cache is bounded both by entry count and by an estimate
+ * of the memory held by the sources and their compiled templates, least recently
+ * used entries being evicted first. Lookups do not lock the cache.
+ */
+final class StringTemplateCache
+{
+    /** Default maximum number of cached templates */
+    static final int DEFAULT_MAX_ENTRIES = 500;
+    /** Default maximum estimated size of the cached templates, in bytes */
+    static final long DEFAULT_MAX_BYTES = 8L * 1024L * 1024L;
+
+    private final int _nMaxEntries;
+    private final long _lMaxBytes;
+    private final ConcurrentLinkedHashMap<String, CompiledStringTemplate> _mapTemplates;
+
+    /**
+     * Constructor
+     * @param nMaxEntries maximum number of cached templates
+     * @param lMaxBytes maximum estimated size of the cached templates, in bytes
+     */
+    StringTemplateCache( int nMaxEntries, long lMaxBytes )
+    {
+        _nMaxEntries = nMaxEntries;
+        _lMaxBytes = lMaxBytes;
+        _mapTemplates = new ConcurrentLinkedHashMap.Builder<String, CompiledStringTemplate>(  ).maximumWeightedCapacity( Math.max(
+                    lMaxBytes, 1 ) ).weigher( new Weigher<CompiledStringTemplate>(  )
+                {
+                    @Override
+                    public int weightOf( CompiledStringTemplate compiled )
+                    {
+                        return compiled.getWeight(  );
+                    }
+                } ).build(  );
+    }
+
+    /**
+     * Get a compiled template
+     * @param strTemplate the template source
+     * @return the compiled template, or <code>null</code> if it is not cached
+     */
+    CompiledStringTemplate get( String strTemplate )
+    {
+        return _mapTemplates.get( strTemplate );
+    }
+
+    /**
+     * Store a compiled template, evicting the least recently used entries
+     * if the cache bounds are exceeded
+     * @param strTemplate the template source
+     * @param compiled the compiled template
+     */
+    void put( String strTemplate, CompiledStringTemplate compiled )
+    {
+        if ( _nMaxEntries <= 0 || compiled.getWeight(  ) > _lMaxBytes )
+        {
+            // would evict everything else for nothing
+            return;
+        }
+        _mapTemplates.put( strTemplate, compiled );
+        int nExcess = _mapTemplates.size(  ) - _nMaxEntries;
+        if ( nExcess > 0 )
+        {
+            for ( String strEvicted : _mapTemplates.ascendingKeySetWithLimit( nExcess ) )
+            {
+                _mapTemplates.remove( strEvicted );
+            }
+        }
+    }
+
+    /**
+     * Remove a compiled template
+     * @param strTemplate the template source
+     * @param compiled the compiled template, only removed if still cached
+     */
+    void remove( String strTemplate, CompiledStringTemplate compiled )
+    {
+        _mapTemplates.remove( strTemplate, compiled );
+    }
+
+    /**
+     * Evict the templates depending on a template
+     * @param strName the name of the changed template
+     * @return <code>true</code> if templates were evicted
+     */
+    boolean invalidate( String strName )
+    {
+        boolean bEvicted = false;
+        for ( Map.Entry<String, CompiledStringTemplate> entry : _mapTemplates.entrySet(  ) )
+        {
+            if ( entry.getValue(  ).dependsOn( strName ) )
+            {
+                bEvicted |= _mapTemplates.remove( entry.getKey(  ), entry.getValue(  ) );
+            }
+        }
+        return bEvicted;
+    }
+
+    /**
+     * Get the number of cached templates
+     * @return the number of cached templates
+     */
+    int size(  )
+    {
+        return _mapTemplates.size(  );
+    }
+
+    /**
+     * Get the estimated size of the cached templates
+     * @return the estimated size of the cached templates, in bytes
+     */
+    long getBytes(  )
+    {
+        return _mapTemplates.weightedSize(  );
+    }
+
+    /**
+     * Remove all the cached templates
+     */
+    void clear(  )
+    {
+        _mapTemplates.clear(  );
+    }
+
+    /**
+     * Estimate the memory held by a cached template
+     * @param strTemplate the template source
+     * @param template the compiled template
+     * @return the estimated size, in bytes
+     */
+    static long weigh( String strTemplate, JadeTemplate template )
+    {
+        return Math.min( Integer.MAX_VALUE, ( 2L * strTemplate.length(  ) ) + TemplateSizeEstimator.estimate( template ) );
+    }
+}
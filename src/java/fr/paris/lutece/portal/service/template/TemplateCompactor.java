@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+
+import de.neuland.jade4j.parser.BlockCommentNode;
+import de.neuland.jade4j.parser.CommentNode;
+import de.neuland.jade4j.parser.node.BlockNode;
+import de.neuland.jade4j.parser.node.LiteralNode;
+import de.neuland.jade4j.parser.node.Node;
+import de.neuland.jade4j.parser.node.TagNode;
+import de.neuland.jade4j.parser.node.TextNode;
+import de.neuland.jade4j.template.JadeTemplate;
+
+/**
+ * Compacts the output of a compiled template.
+ * 
+ * Pretty print is disabled, the comments are removed, except the conditional comments,
+ * and the runs of whitespace of the texts are collapsed into a single space, which
+ * the browsers render the same way. The content of the tags where whitespace is
+ * significant, like <code>pre</code> or <code>script</code>, and the interpolated
+ * expressions are left unchanged.
+ */
+final class TemplateCompactor
+{
+    private static final Set<String> PRESERVING_TAGS = Collections.unmodifiableSet( new HashSet<String>( Arrays.asList(
+                    "pre", "textarea", "script", "style" ) ) );
+    private static final String CONDITIONAL_COMMENT = "if";
+
+    /**
+     * Private constructor
+     */
+    private TemplateCompactor(  )
+    {
+    }
+
+    /**
+     * Compact the output of a template
+     * @param template the compiled template
+     */
+    static void compact( JadeTemplate template )
+    {
+        template.setPrettyPrint( false );
+        compact( template.getRootNode(  ) );
+    }
+
+    /**
+     * Compact the output of a node and its children
+     * @param node the node
+     */
+    private static void compact( Node node )
+    {
+        if ( node instanceof TextNode )
+        {
+            TextNode text = ( TextNode ) node;
+            if ( text.getValue(  ) != null )
+            {
+                text.setValue( collapseWhitespace( text.getValue(  ) ) );
+            }
+            return;
+        }
+        if ( node instanceof TagNode && PRESERVING_TAGS.contains( String.valueOf( node.getName(  ) ).toLowerCase( Locale.ROOT ) ) )
+        {
+            return;
+        }
+        if ( node instanceof TagNode && ( ( TagNode ) node ).hasTextNode(  ) )
+        {
+            compact( ( ( TagNode ) node ).getTextNode(  ) );
+        }
+        if ( node instanceof BlockNode )
+        {
+            removeComments( node );
+        }
+        for ( Node child : TemplateNodes.getChildren( node ) )
+        {
+            compact( child );
+        }
+        if ( node instanceof BlockNode )
+        {
+            joinTexts( node );
+        }
+    }
+
+    /**
+     * Remove the leading space of the texts following a text ending with a space, the
+     * lines of a text block being separate nodes
+     * @param block the block
+     */
+    private static void joinTexts( Node block )
+    {
+        Node previous = null;
+        for ( Node child : block.getNodes(  ) )
+        {
+            if ( previous instanceof TextNode && child instanceof TextNode && endsWithSpace( previous.getValue(  ) ) &&
+                    child.getValue(  ) != null && child.getValue(  ).startsWith( " " ) )
+            {
+                ( ( TextNode ) child ).setValue( child.getValue(  ).substring( 1 ) );
+            }
+            previous = child;
+        }
+    }
+
+    /**
+     * Check if a text ends with a space
+     * @param strText the text
+     * @return <code>true</code> if the text is not empty and ends with a space
+     */
+    private static boolean endsWithSpace( String strText )
+    {
+        return strText != null && strText.endsWith( " " );
+    }
+
+    /**
+     * Remove the comments of a block
+     * @param block the block
+     */
+    private static void removeComments( Node block )
+    {
+        boolean bRemoved = false;
+        for ( Iterator<Node> iterator = block.getNodes(  ).iterator(  ); iterator.hasNext(  ); )
+        {
+            Node child = iterator.next(  );
+            if ( child instanceof CommentNode && !isConditional( child ) )
+            {
+                iterator.remove(  );
+                bRemoved = true;
+            }
+        }
+        if ( bRemoved && !block.hasNodes(  ) )
+        {
+            // an empty block would become an injection point for the blocks of mixin calls
+            LiteralNode literal = new LiteralNode(  );
+            literal.setValue( "" );
+            block.push( literal );
+        }
+    }
+
+    /**
+     * Check if a comment is a conditional comment
+     * @param comment the comment
+     * @return <code>true</code> if the comment is interpreted by the browsers
+     */
+    private static boolean isConditional( Node comment )
+    {
+        return comment instanceof BlockCommentNode && comment.getValue(  ) != null &&
+        comment.getValue(  ).trim(  ).startsWith( CONDITIONAL_COMMENT );
+    }
+
+    /**
+     * Collapse the runs of whitespace of a text, outside its interpolations
+     * @param strText the text
+     * @return the collapsed text
+     */
+    static String collapseWhitespace( String strText )
+    {
+        StringBuilder sbText = new StringBuilder( strText.length(  ) );
+        int nLength = strText.length(  );
+        int i = 0;
+        while ( i < nLength )
+        {
+            char c = strText.charAt( i );
+            if ( ( c == '#' || c == '!' ) && i + 1 < nLength && strText.charAt( i + 1 ) == '{' )
+            {
+                int nEnd = strText.indexOf( '}', i );
+                nEnd = ( nEnd < 0 ) ? nLength : nEnd + 1;
+                sbText.append( strText, i, nEnd );
+                i = nEnd;
+            } else if ( Character.isWhitespace( c ) )
+            {
+                sbText.append( ' ' );
+                while ( i < nLength && Character.isWhitespace( strText.charAt( i ) ) )
+                {
+                    i++;
+                }
+            } else
+            {
+                sbText.append( c );
+                i++;
+            }
+        }
+        return sbText.toString(  );
+    }
+}
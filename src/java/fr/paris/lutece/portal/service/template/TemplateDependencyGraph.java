@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependencies between compiled templates.
+ * 
+ * A template depends on the templates it includes or extends, mixins being
+ * declared in included templates. The dependencies of a template are the ones
+ * recorded during its last compilation, including indirect ones.
+ */
+final class TemplateDependencyGraph
+{
+    private final Map<String, Set<String>> _mapDependencies = new HashMap<String, Set<String>>(  );
+    private final Map<String, Set<String>> _mapDependents = new HashMap<String, Set<String>>(  );
+
+    /**
+     * Record the dependencies of a template, replacing the previous ones
+     * @param strName the template name
+     * @param setDependencies the names of the templates it depends on
+     */
+    synchronized void update( String strName, Set<String> setDependencies )
+    {
+        remove( strName );
+        Set<String> setOwnDependencies = new HashSet<String>( setDependencies );
+        setOwnDependencies.remove( strName );
+        _mapDependencies.put( strName, setOwnDependencies );
+        for ( String strDependency : setOwnDependencies )
+        {
+            Set<String> setDependents = _mapDependents.get( strDependency );
+            if ( setDependents == null )
+            {
+                setDependents = new HashSet<String>(  );
+                _mapDependents.put( strDependency, setDependents );
+            }
+            setDependents.add( strName );
+        }
+    }
+
+    /**
+     * Forget the dependencies of a template
+     * @param strName the template name
+     */
+    synchronized void remove( String strName )
+    {
+        Set<String> setDependencies = _mapDependencies.remove( strName );
+        if ( setDependencies == null )
+        {
+            return;
+        }
+        for ( String strDependency : setDependencies )
+        {
+            Set<String> setDependents = _mapDependents.get( strDependency );
+            if ( setDependents != null )
+            {
+                setDependents.remove( strName );
+                if ( setDependents.isEmpty(  ) )
+                {
+                    _mapDependents.remove( strDependency );
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the templates a template depends on
+     * @param strName the template name
+     * @return the names of the templates it depends on
+     */
+    synchronized Set<String> getDependencies( String strName )
+    {
+        Set<String> setDependencies = _mapDependencies.get( strName );
+        return setDependencies == null ? Collections.<String>emptySet(  ) : new HashSet<String>( setDependencies );
+    }
+
+    /**
+     * Get the templates depending on a template, directly or not
+     * @param strName the template name
+     * @return the names of the templates depending on it
+     */
+    synchronized Set<String> getDependents( String strName )
+    {
+        Set<String> setDependents = new LinkedHashSet<String>(  );
+        Deque<String> queue = new ArrayDeque<String>(  );
+        queue.add( strName );
+        while ( !queue.isEmpty(  ) )
+        {
+            Set<String> setDirectDependents = _mapDependents.get( queue.poll(  ) );
+            if ( setDirectDependents != null )
+            {
+                for ( String strDependent : setDirectDependents )
+                {
+                    if ( !strDependent.equals( strName ) && setDependents.add( strDependent ) )
+                    {
+                        queue.add( strDependent );
+                    }
+                }
+            }
+        }
+        return setDependents;
+    }
+
+    /**
+     * Forget all the dependencies
+     */
+    synchronized void clear(  )
+    {
+        _mapDependencies.clear(  );
+        _mapDependents.clear(  );
+    }
+}
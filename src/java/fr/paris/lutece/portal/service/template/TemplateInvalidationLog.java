@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Log of the recent template invalidations, so that the String templates compiled
+ * before an invalidation can tell whether they read the changed template.
+ * 
+ * Each invalidation increments the generation of the log. A compiled template keeps
+ * the generation it was last checked in, and only the templates invalidated since are
+ * checked against its dependencies. Only the last invalidations are remembered :
+ * a template not checked since is considered invalidated, as after a cache reset.
+ */
+final class TemplateInvalidationLog
+{
+    /** Number of invalidations remembered */
+    private static final int CAPACITY = 256;
+    /** Name recorded when every template is invalidated */
+    private static final String ALL = null;
+
+    private final AtomicReferenceArray<String> _names = new AtomicReferenceArray<String>( CAPACITY );
+    private volatile long _lGeneration;
+
+    /**
+     * Get the current generation
+     * @return the number of invalidations so far
+     */
+    long getGeneration(  )
+    {
+        return _lGeneration;
+    }
+
+    /**
+     * Record the invalidation of a template
+     * @param strName the name of the changed template
+     */
+    synchronized void invalidate( String strName )
+    {
+        long lGeneration = _lGeneration + 1;
+        _names.set( ( int ) ( lGeneration % CAPACITY ), strName );
+        // published after the name, so that readers of the generation see the name
+        _lGeneration = lGeneration;
+    }
+
+    /**
+     * Record the invalidation of every template
+     */
+    void invalidateAll(  )
+    {
+        invalidate( ALL );
+    }
+
+    /**
+     * Check if a compiled template read a template invalidated since it was last checked
+     * @param compiled the compiled template
+     * @return <code>true</code> if the template must be compiled again
+     */
+    boolean isInvalidated( CompiledStringTemplate compiled )
+    {
+        long lChecked = compiled.getCheckedGeneration(  );
+        long lCurrent = _lGeneration;
+        if ( lCurrent == lChecked )
+        {
+            return false;
+        }
+        if ( lCurrent - lChecked >= CAPACITY )
+        {
+            return true;
+        }
+        for ( long l = lChecked + 1; l <= lCurrent; l++ )
+        {
+            String strName = _names.get( ( int ) ( l % CAPACITY ) );
+            if ( strName == ALL || compiled.dependsOn( strName ) )
+            {
+                return true;
+            }
+        }
+        if ( _lGeneration - lChecked >= CAPACITY )
+        {
+            // the names read may have been overwritten by newer invalidations meanwhile
+            return true;
+        }
+        compiled.setCheckedGeneration( lCurrent );
+        return false;
+    }
+}
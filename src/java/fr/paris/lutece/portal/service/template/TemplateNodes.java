@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.neuland.jade4j.parser.node.CaseNode;
+import de.neuland.jade4j.parser.node.ConditionalNode;
+import de.neuland.jade4j.parser.node.EachNode;
+import de.neuland.jade4j.parser.node.Node;
+import de.neuland.jade4j.parser.node.TextNode;
+
+/**
+ * Navigation in the tree of a compiled template
+ */
+final class TemplateNodes
+{
+    /**
+     * Private constructor
+     */
+    private TemplateNodes(  )
+    {
+    }
+
+    /**
+     * Get the nodes executed by a node
+     * @param node the node
+     * @return the blocks, children and conditions of the node
+     */
+    static List<Node> getChildren( Node node )
+    {
+        List<Node> listChildren = new ArrayList<Node>(  );
+        if ( node.getBlock(  ) != null )
+        {
+            listChildren.add( node.getBlock(  ) );
+        }
+        if ( !( node instanceof TextNode ) && node.getNodes(  ) != null )
+        {
+            listChildren.addAll( node.getNodes(  ) );
+        }
+        if ( node instanceof ConditionalNode )
+        {
+            listChildren.addAll( ( ( ConditionalNode ) node ).getConditions(  ) );
+        } else if ( node instanceof CaseNode )
+        {
+            listChildren.addAll( ( ( CaseNode ) node ).getCaseConditionNodes(  ) );
+        } else if ( node instanceof EachNode && ( ( EachNode ) node ).getElseNode(  ) != null )
+        {
+            listChildren.add( ( ( EachNode ) node ).getElseNode(  ) );
+        }
+        return listChildren;
+    }
+}
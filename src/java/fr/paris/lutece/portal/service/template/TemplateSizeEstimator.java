@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.util.Map;
+
+import de.neuland.jade4j.parser.node.AttributedNode;
+import de.neuland.jade4j.parser.node.Node;
+import de.neuland.jade4j.parser.node.TagNode;
+import de.neuland.jade4j.parser.node.TextNode;
+import de.neuland.jade4j.template.JadeTemplate;
+
+/**
+ * Estimates the memory held by a compiled template, from the number of nodes of its
+ * tree and the length of their strings. The estimate is meant to weigh templates against
+ * each other, not to be exact.
+ */
+final class TemplateSizeEstimator
+{
+    /** Estimated size of a node and its children list, in bytes */
+    private static final int NODE_SIZE = 96;
+    /** Estimated size of an attribute entry, in bytes */
+    private static final int ATTRIBUTE_SIZE = 48;
+    /** Estimated size of a String without its characters, in bytes */
+    private static final int STRING_SIZE = 40;
+
+    /**
+     * Private constructor
+     */
+    private TemplateSizeEstimator(  )
+    {
+    }
+
+    /**
+     * Estimate the size of a compiled template
+     * @param template the compiled template
+     * @return the estimated size in bytes
+     */
+    static long estimate( JadeTemplate template )
+    {
+        return ( template.getRootNode(  ) == null ) ? NODE_SIZE : estimate( template.getRootNode(  ) );
+    }
+
+    /**
+     * Estimate the size of a node and its children
+     * @param node the node
+     * @return the estimated size in bytes
+     */
+    private static long estimate( Node node )
+    {
+        long lSize = NODE_SIZE + sizeOf( node.getName(  ) ) + sizeOf( node.getValue(  ) );
+        if ( node instanceof TextNode )
+        {
+            // the text is also kept split around its interpolations
+            lSize += sizeOf( ( ( TextNode ) node ).getValue(  ) );
+        }
+        if ( node instanceof EncodedLiteralNode )
+        {
+            lSize += ( ( EncodedLiteralNode ) node ).getEncodedLength(  );
+        }
+        if ( node instanceof AttributedNode )
+        {
+            for ( Map.Entry<String, Object> attribute : ( ( AttributedNode ) node ).getAttributes(  ).entrySet(  ) )
+            {
+                lSize += ATTRIBUTE_SIZE + sizeOf( attribute.getKey(  ) ) + sizeOf( String.valueOf( attribute.getValue(  ) ) );
+            }
+        }
+        if ( node instanceof TagNode && ( ( TagNode ) node ).hasTextNode(  ) )
+        {
+            lSize += estimate( ( ( TagNode ) node ).getTextNode(  ) );
+        }
+        for ( Node child : TemplateNodes.getChildren( node ) )
+        {
+            lSize += estimate( child );
+        }
+        return lSize;
+    }
+
+    /**
+     * Estimate the size of a String
+     * @param str the String, may be <code>null</code>
+     * @return the estimated size in bytes
+     */
+    private static long sizeOf( String str )
+    {
+        return ( str == null ) ? 0 : ( STRING_SIZE + ( 2L * str.length(  ) ) );
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Watches a template directory tree and evicts the compiled templates
+ * affected by file changes.
+ * 
+ * Templates under the watched directory are considered fresh until a change
+ * is reported, so their modification date no longer needs to be checked on each
+ * render. Change notification latency depends on the platform : it is immediate
+ * on Linux, but WatchService implementations based on polling may take several
+ * seconds.
+ */
+final class TemplateWatcher implements Runnable
+{
+    private static final Logger _logger = Logger.getLogger( "lutece.jade" );
+
+    private final Path _root;
+    private final IJadeTemplateService _templateService;
+    private final WatchService _watchService;
+    private final Map<WatchKey, Path> _mapDirectories;
+    private volatile boolean _bRunning;
+
+    /**
+     * Constructor
+     * @param root the watched directory
+     * @param templateService the service to evict templates from
+     * @throws IOException if the directory cannot be watched
+     */
+    TemplateWatcher( Path root, IJadeTemplateService templateService ) throws IOException
+    {
+        _root = root;
+        _templateService = templateService;
+        _watchService = root.getFileSystem(  ).newWatchService(  );
+        _mapDirectories = new ConcurrentHashMap<WatchKey, Path>(  );
+        register( root, false );
+    }
+
+    /**
+     * Start watching in a daemon thread
+     */
+    void start(  )
+    {
+        _bRunning = true;
+        Thread thread = new Thread( this, "jade-template-watcher" );
+        thread.setDaemon( true );
+        thread.start(  );
+    }
+
+    /**
+     * Stop watching
+     */
+    void close(  )
+    {
+        _bRunning = false;
+        try
+        {
+            _watchService.close(  );
+        } catch ( IOException e )
+        {
+            _logger.warn( "Unable to close the jade template watcher", e );
+        }
+    }
+
+    /**
+     * Check if a template is watched
+     * @param strName the template name
+     * @return <code>true</code> if changes to the template are reported by this watcher
+     */
+    boolean covers( String strName )
+    {
+        return _bRunning && !new File( strName ).isAbsolute(  );
+    }
+
+    @Override
+    public void run(  )
+    {
+        try
+        {
+            while ( true )
+            {
+                WatchKey key = _watchService.take(  );
+                Path directory = _mapDirectories.get( key );
+                for ( WatchEvent<?> event : key.pollEvents(  ) )
+                {
+                    if ( event.kind(  ) == StandardWatchEventKinds.OVERFLOW || directory == null )
+                    {
+                        _templateService.resetCache(  );
+                        continue;
+                    }
+                    Path file = directory.resolve( ( Path ) event.context(  ) );
+                    if ( event.kind(  ) == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory( file ) )
+                    {
+                        // files created before the directory is watched have no event
+                        register( file, true );
+                    }
+                    invalidate( file );
+                }
+                if ( !key.reset(  ) )
+                {
+                    _mapDirectories.remove( key );
+                }
+            }
+        } catch ( ClosedWatchServiceException e )
+        {
+            // watcher closed
+        } catch ( InterruptedException e )
+        {
+            Thread.currentThread(  ).interrupt(  );
+        } catch ( IOException e )
+        {
+            _logger.error( "Jade template watcher stopped, falling back to modification date checks", e );
+        } finally
+        {
+            _bRunning = false;
+        }
+    }
+
+    /**
+     * Evict the templates affected by a changed file
+     * @param file the file
+     */
+    private void invalidate( Path file )
+    {
+        String strName = _root.relativize( file ).toString(  ).replace( File.separatorChar, '/' );
+        _logger.debug( "Jade template changed : " + strName );
+        _templateService.invalidate( strName );
+    }
+
+    /**
+     * Watch a directory and its sub directories
+     * @param directory the directory
+     * @param bInvalidateFiles <code>true</code> to evict the templates affected by the files already in the directory
+     * @throws IOException if the directory cannot be watched
+     */
+    private void register( Path directory, final boolean bInvalidateFiles ) throws IOException
+    {
+        Files.walkFileTree( directory, new SimpleFileVisitor<Path>(  )
+            {
+                @Override
+                public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attrs ) throws IOException
+                {
+                    WatchKey key = dir.register( _watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY );
+                    _mapDirectories.put( key, dir );
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+                {
+                    if ( bInvalidateFiles )
+                    {
+                        invalidate( file );
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            } );
+    }
+}
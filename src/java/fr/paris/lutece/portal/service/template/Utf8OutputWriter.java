@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2015, Mairie de Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.portal.service.template;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Writer encoding the characters in UTF-8 to an output stream, through a byte buffer.
+ * 
+ * The static segments pre-encoded at compile time are announced by their node with
+ * {@link #expect(String, byte[])} before being written : when the next String written is
+ * that very segment, its bytes are copied instead of being encoded again. Otherwise, like
+ * when the segment is written to another writer by a filter, the announce is dropped. The output
+ * stream is flushed but never closed by this writer.
+ */
+final class Utf8OutputWriter extends Writer
+{
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte REPLACEMENT = '?';
+
+    private final OutputStream _out;
+    private final byte[] _buffer = new byte[BUFFER_SIZE];
+    private int _nPosition;
+    private char _cHighSurrogate;
+    private String _strExpected;
+    private byte[] _expectedBytes;
+
+    /**
+     * Constructor
+     * @param out the stream receiving the encoded characters
+     */
+    Utf8OutputWriter( OutputStream out )
+    {
+        _out = out;
+    }
+
+    /**
+     * Announce the next segment written, with its encoded form
+     * @param strSegment the segment
+     * @param bytes the segment encoded in UTF-8
+     */
+    void expect( String strSegment, byte[] bytes )
+    {
+        _strExpected = strSegment;
+        _expectedBytes = bytes;
+    }
+
+    @Override
+    public void write( String str, int off, int len ) throws IOException
+    {
+        String strExpected = _strExpected;
+        _strExpected = null;
+        if ( str == strExpected && off == 0 && len == str.length(  ) && _cHighSurrogate == 0 )
+        {
+            writeBytes( _expectedBytes );
+            return;
+        }
+        for ( int i = off; i < off + len; i++ )
+        {
+            encode( str.charAt( i ) );
+        }
+    }
+
+    @Override
+    public void write( char[] cbuf, int off, int len ) throws IOException
+    {
+        _strExpected = null;
+        for ( int i = off; i < off + len; i++ )
+        {
+            encode( cbuf[i] );
+        }
+    }
+
+    @Override
+    public void write( int c ) throws IOException
+    {
+        _strExpected = null;
+        encode( ( char ) c );
+    }
+
+    @Override
+    public void flush(  ) throws IOException
+    {
+        flushBuffer(  );
+        _out.flush(  );
+    }
+
+    @Override
+    public void close(  ) throws IOException
+    {
+        if ( _cHighSurrogate != 0 )
+        {
+            _cHighSurrogate = 0;
+            writeByte( REPLACEMENT );
+        }
+        flush(  );
+    }
+
+    /**
+     * Encode a character, surrogate pairs being encoded once complete
+     * @param c the character
+     * @throws IOException if the stream cannot be written
+     */
+    private void encode( char c ) throws IOException
+    {
+        if ( _cHighSurrogate != 0 )
+        {
+            char cHigh = _cHighSurrogate;
+            _cHighSurrogate = 0;
+            if ( Character.isLowSurrogate( c ) )
+            {
+                int nCodePoint = Character.toCodePoint( cHigh, c );
+                ensureCapacity( 4 );
+                _buffer[_nPosition++] = ( byte ) ( 0xF0 | ( nCodePoint >> 18 ) );
+                _buffer[_nPosition++] = ( byte ) ( 0x80 | ( ( nCodePoint >> 12 ) & 0x3F ) );
+                _buffer[_nPosition++] = ( byte ) ( 0x80 | ( ( nCodePoint >> 6 ) & 0x3F ) );
+                _buffer[_nPosition++] = ( byte ) ( 0x80 | ( nCodePoint & 0x3F ) );
+                return;
+            }
+            writeByte( REPLACEMENT );
+        }
+        if ( c < 0x80 )
+        {
+            writeByte( ( byte ) c );
+        } else if ( c < 0x800 )
+        {
+            ensureCapacity( 2 );
+            _buffer[_nPosition++] = ( byte ) ( 0xC0 | ( c >> 6 ) );
+            _buffer[_nPosition++] = ( byte ) ( 0x80 | ( c & 0x3F ) );
+        } else if ( Character.isHighSurrogate( c ) )
+        {
+            _cHighSurrogate = c;
+        } else if ( Character.isLowSurrogate( c ) )
+        {
+            writeByte( REPLACEMENT );
+        } else
+        {
+            ensureCapacity( 3 );
+            _buffer[_nPosition++] = ( byte ) ( 0xE0 | ( c >> 12 ) );
+            _buffer[_nPosition++] = ( byte ) ( 0x80 | ( ( c >> 6 ) & 0x3F ) );
+            _buffer[_nPosition++] = ( byte ) ( 0x80 | ( c & 0x3F ) );
+        }
+    }
+
+    /**
+     * Write a single byte
+     * @param b the byte
+     * @throws IOException if the stream cannot be written
+     */
+    private void writeByte( byte b ) throws IOException
+    {
+        ensureCapacity( 1 );
+        _buffer[_nPosition++] = b;
+    }
+
+    /**
+     * Write encoded bytes, directly to the stream when they do not fit in the buffer
+     * @param bytes the bytes
+     * @throws IOException if the stream cannot be written
+     */
+    private void writeBytes( byte[] bytes ) throws IOException
+    {
+        if ( bytes.length > BUFFER_SIZE - _nPosition )
+        {
+            flushBuffer(  );
+            if ( bytes.length > BUFFER_SIZE )
+            {
+                _out.write( bytes );
+                return;
+            }
+        }
+        System.arraycopy( bytes, 0, _buffer, _nPosition, bytes.length );
+        _nPosition += bytes.length;
+    }
+
+    /**
+     * Make room in the buffer
+     * @param nBytes the number of bytes about to be written
+     * @throws IOException if the stream cannot be written
+     */
+    private void ensureCapacity( int nBytes ) throws IOException
+    {
+        if ( _nPosition + nBytes > BUFFER_SIZE )
+        {
+            flushBuffer(  );
+        }
+    }
+
+    /**
+     * Write the buffer to the stream
+     * @throws IOException if the stream cannot be written
+     */
+    private void flushBuffer(  ) throws IOException
+    {
+        if ( _nPosition > 0 )
+        {
+            _out.write( _buffer, 0, _nPosition );
+            _nPosition = 0;
+        }
+    }
+}
@@ -0,0 +1,665 @@
+package fr.paris.lutece.portal.service.template;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import fr.paris.lutece.util.html.HtmlTemplate;
+
+public class AbstractJadeTemplateServiceTest
+{
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder( );
+
+    private AbstractJadeTemplateService createService( )
+    {
+        return new AbstractJadeTemplateService( )
+        {
+
+            @Override
+            protected String getAbsolutePathFromRelativePath( String strPath )
+            {
+                return strPath;
+            }
+        };
+    }
+
+    private void write( String strName, String strContent ) throws IOException
+    {
+        File file = new File( _folder.getRoot( ), strName );
+        file.getParentFile( ).mkdirs( );
+        Files.write( file.toPath( ), strContent.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    @Test
+    public void testWarmUp( ) throws IOException
+    {
+        write( "page.jade", "p page" );
+        write( "sub/part.jade", "p part" );
+        write( "broken.jade", "include missing" );
+        write( "ignored.html", "<p>ignored</p>" );
+        AbstractJadeTemplateService service = createService( );
+        service.init( _folder.getRoot( ).getPath( ) );
+
+        JadeWarmUpReport report = service.warmUp( );
+        Assert.assertEquals( 2, report.getCompiledCount( ) );
+        Assert.assertEquals( 1, report.getFailures( ).size( ) );
+        Assert.assertTrue( report.getFailures( ).containsKey( "broken.jade" ) );
+    }
+
+    @Test
+    public void testWatchTemplates( ) throws Exception
+    {
+        write( "layout.jade", "p layout" );
+        write( "page.jade", "include layout\np page" );
+        AbstractJadeTemplateService service = createService( );
+        service.setWatchTemplates( true );
+        service.init( _folder.getRoot( ).getPath( ) );
+        try
+        {
+            String strPath = _folder.getRoot( ).getPath( ) + "/";
+            Assert.assertEquals( "<p>layout</p><p>page</p>", service.loadTemplate( strPath, "page.jade", Locale.FRENCH, new HashMap<String, Object>( ) ).getHtml( ) );
+
+            write( "layout.jade", "p changed" );
+            String strHtml = null;
+            for ( int i = 0; i < 100 && !"<p>changed</p><p>page</p>".equals( strHtml ); i++ )
+            {
+                Thread.sleep( 50 );
+                strHtml = service.loadTemplate( strPath, "page.jade", Locale.FRENCH, new HashMap<String, Object>( ) ).getHtml( );
+            }
+            Assert.assertEquals( "<p>changed</p><p>page</p>", strHtml );
+        } finally
+        {
+            service.close( );
+        }
+    }
+
+    @Test
+    public void testWatchCreatedDirectory( ) throws Exception
+    {
+        write( "root/sub/page.jade", "p old" );
+        write( "new/sub/page.jade", "p new" );
+        File root = new File( _folder.getRoot( ), "root" );
+        AbstractJadeTemplateService service = createService( );
+        service.setWatchTemplates( true );
+        service.init( root.getPath( ) );
+        try
+        {
+            String strPath = root.getPath( ) + "/";
+            Assert.assertEquals( "<p>old</p>", service.loadTemplate( strPath, "sub/page.jade", Locale.FRENCH, null ).getHtml( ) );
+
+            // the directory and its file are created at once, the file has no event of its own
+            Files.move( new File( root, "sub" ).toPath( ), new File( _folder.getRoot( ), "old" ).toPath( ) );
+            Files.move( new File( _folder.getRoot( ), "new/sub" ).toPath( ), new File( root, "sub" ).toPath( ) );
+            String strHtml = null;
+            for ( int i = 0; i < 100 && !"<p>new</p>".equals( strHtml ); i++ )
+            {
+                Thread.sleep( 50 );
+                strHtml = service.loadTemplate( strPath, "sub/page.jade", Locale.FRENCH, null ).getHtml( );
+            }
+            Assert.assertEquals( "<p>new</p>", strHtml );
+        } finally
+        {
+            service.close( );
+        }
+    }
+
+    @Test
+    public void testInvalidate( ) throws Exception
+    {
+        write( "mixins.jade", "mixin item\n\tli item" );
+        write( "layout.jade", "include mixins\nul\n\tblock content" );
+        write( "page.jade", "extends layout\nblock content\n\t+item" );
+        AbstractJadeTemplateService service = createService( );
+        service.init( _folder.getRoot( ).getPath( ) );
+        String strPath = _folder.getRoot( ).getPath( ) + "/";
+        Assert.assertEquals( "<ul><li>item</li></ul>", service.loadTemplate( strPath, "page.jade", Locale.FRENCH, new HashMap<String, Object>( ) ).getHtml( ) );
+        Assert.assertTrue( service.getTemplateDependencies( "page.jade" ).contains( "mixins.jade" ) );
+        Assert.assertTrue( service.getTemplateDependents( "mixins.jade" ).contains( "page.jade" ) );
+
+        service.invalidate( "mixins.jade" );
+        Assert.assertTrue( service.getTemplateDependents( "mixins.jade" ).isEmpty( ) );
+    }
+
+    @Test
+    public void testInvalidateStringTemplates( ) throws Exception
+    {
+        write( "menu.jade", "p old" );
+        AbstractJadeTemplateService service = createService( );
+        service.init( _folder.getRoot( ).getPath( ) );
+        Assert.assertEquals( "<p>old</p>", service.loadTemplate( "include menu", Locale.FRENCH, null ).getHtml( ) );
+        Assert.assertEquals( "<p>other</p>", service.loadTemplate( "p other", Locale.FRENCH, null ).getHtml( ) );
+
+        IJadeCompiledTemplate menu = service.compile( "include menu" );
+        IJadeCompiledTemplate other = service.compile( "p other" );
+        Assert.assertTrue( menu.isValid( ) );
+
+        write( "menu.jade", "p new" );
+        service.invalidate( "menu.jade" );
+        Assert.assertEquals( "<p>new</p>", service.loadTemplate( "include menu", Locale.FRENCH, null ).getHtml( ) );
+        Assert.assertFalse( menu.isValid( ) );
+        // only the templates reading the invalidated template are compiled again
+        Assert.assertTrue( other.isValid( ) );
+        service.invalidate( "unrelated.jade" );
+        Assert.assertTrue( service.compile( "include menu" ).isValid( ) );
+        service.resetCache( );
+        Assert.assertFalse( other.isValid( ) );
+    }
+
+    @Test
+    public void testMetrics( ) throws Exception
+    {
+        write( "page.jade", "p page" );
+        JadeMetrics metrics = new JadeMetrics( );
+        AbstractJadeTemplateService service = createService( );
+        service.setMetricsListener( metrics );
+        service.init( _folder.getRoot( ).getPath( ) );
+        String strPath = _folder.getRoot( ).getPath( ) + "/";
+        service.loadTemplate( strPath, "page.jade", Locale.FRENCH, new HashMap<String, Object>( ) );
+        service.loadTemplate( strPath, "page.jade", Locale.FRENCH, new HashMap<String, Object>( ) );
+
+        JadeTemplateStatistics statistics = metrics.getTemplateStatistics( "page.jade" );
+        Assert.assertEquals( 2, statistics.getLookupCount( ) );
+        Assert.assertEquals( 1, statistics.getCacheHitCount( ) );
+        Assert.assertEquals( 1, statistics.getCompileCount( ) );
+        Assert.assertEquals( 2, statistics.getRenderCount( ) );
+        Assert.assertEquals( "<p>page</p>".length( ) * 2, statistics.getOutputSize( ) );
+    }
+
+    @Test
+    public void testTemplateRoots( ) throws Exception
+    {
+        write( "default/page.jade", "include menu\np page" );
+        write( "plugin/menu.jade", "p menu" );
+        write( "plugin/sub/plugin.jade", "p plugin" );
+        AbstractJadeTemplateService service = createService( );
+        service.setTemplateDirectories( Arrays.asList( _folder.getRoot( ).getPath( ) + "/plugin" ) );
+        service.setClasspathTemplateRoots( Arrays.asList( "jade" ) );
+        service.init( _folder.getRoot( ).getPath( ) + "/default" );
+        String strPath = _folder.getRoot( ).getPath( ) + "/default/";
+
+        Assert.assertEquals( "<p>menu</p><p>page</p>", service.loadTemplate( strPath, "page.jade", Locale.FRENCH, null ).getHtml( ) );
+        Assert.assertEquals( "<p>classpath</p>", service.loadTemplate( strPath, "classpath.jade", Locale.FRENCH, null ).getHtml( ) );
+        Assert.assertEquals( "<p>plugin</p>", service.loadTemplate( _folder.getRoot( ).getPath( ) + "/plugin/sub", "plugin.jade", Locale.FRENCH, null ).getHtml( ) );
+
+        service.putTemplate( "menu.jade", "p override" );
+        Assert.assertEquals( "<p>override</p><p>page</p>", service.loadTemplate( strPath, "page.jade", Locale.FRENCH, null ).getHtml( ) );
+        service.removeTemplate( "menu.jade" );
+        Assert.assertEquals( "<p>menu</p><p>page</p>", service.loadTemplate( strPath, "page.jade", Locale.FRENCH, null ).getHtml( ) );
+    }
+
+    @Test
+    public void testRenderBatch( ) throws Exception
+    {
+        write( "item.jade", "p= name" );
+        List<Map<String, Object>> listModels = new ArrayList<Map<String, Object>>( );
+        StringBuilder sbExpected = new StringBuilder( );
+        for ( int i = 0; i < 50; i++ )
+        {
+            listModels.add( Collections.<String, Object> singletonMap( "name", "item" + i ) );
+            sbExpected.append( "<p>item" ).append( i ).append( "</p>" );
+        }
+        AbstractJadeTemplateService service = createService( );
+        service.init( _folder.getRoot( ).getPath( ) );
+        String strPath = _folder.getRoot( ).getPath( ) + "/";
+        final StringBuilder sbOutput = new StringBuilder( );
+        IJadeBatchSink sink = new IJadeBatchSink( )
+        {
+            @Override
+            public void write( Object model, CharSequence output )
+            {
+                sbOutput.append( output );
+            }
+        };
+
+        service.renderBatch( strPath, "item.jade", Locale.FRENCH, listModels, sink );
+        Assert.assertEquals( sbExpected.toString( ), sbOutput.toString( ) );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            sbOutput.setLength( 0 );
+            service.setBatchExecutor( executor );
+            service.setBatchParallelism( 4 );
+            service.renderBatch( strPath, "item.jade", Locale.FRENCH, listModels, sink );
+            Assert.assertEquals( sbExpected.toString( ), sbOutput.toString( ) );
+        } finally
+        {
+            executor.shutdown( );
+        }
+    }
+
+    @Test
+    public void testFragmentCache( ) throws Exception
+    {
+        write( "menu.jade", "p= name" );
+        write( "page.jade", "!= fragmentCache.render( 'menu', 60, 'menu.jade', { 'name' : name } )" );
+        AbstractJadeTemplateService service = createService( );
+        service.init( _folder.getRoot( ).getPath( ) );
+        String strPath = _folder.getRoot( ).getPath( ) + "/";
+
+        Assert.assertEquals( "<p>first</p>", service.loadTemplate( strPath, "page.jade", Locale.FRENCH, Collections.singletonMap( "name", "first" ) ).getHtml( ) );
+        Assert.assertEquals( "<p>first</p>", service.loadTemplate( strPath, "page.jade", Locale.FRENCH, Collections.singletonMap( "name", "second" ) ).getHtml( ) );
+        service.getFragmentCache( ).invalidate( "menu" );
+        Assert.assertEquals( "<p>second</p>", service.loadTemplate( strPath, "page.jade", Locale.FRENCH, Collections.singletonMap( "name", "second" ) ).getHtml( ) );
+
+        service.getFragmentCache( ).put( "expired", "<p>expired</p>", 0 );
+        Thread.sleep( 1 );
+        Assert.assertNull( service.getFragmentCache( ).get( "expired" ) );
+    }
+
+    @Test
+    public void testConcurrentStringTemplates( ) throws Exception
+    {
+        final AbstractJadeTemplateService service = createService( );
+        service.init( _folder.getRoot( ).getPath( ) );
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            List<Future<String>> listResults = new ArrayList<Future<String>>( );
+            for ( int i = 0; i < 200; i++ )
+            {
+                final String strBody = "p template" + ( i % 50 );
+                listResults.add( executor.submit( new Callable<String>( )
+                {
+                    @Override
+                    public String call( )
+                    {
+                        return service.loadTemplate( strBody, Locale.FRENCH, null ).getHtml( );
+                    }
+                } ) );
+            }
+            for ( int i = 0; i < 200; i++ )
+            {
+                Assert.assertEquals( "<p>template" + ( i % 50 ) + "</p>", listResults.get( i ).get( ) );
+            }
+        } finally
+        {
+            executor.shutdown( );
+        }
+    }
+
+    @Test
+    public void testStaticSegmentFolding( ) throws Exception
+    {
+        write( "layout.jade", "doctype html\nhtml\n  head\n    meta(charset='utf-8')\n  body\n    block content\n    p.footer footer" );
+        write( "page.jade", "extends layout\nblock content\n  mixin box(title)\n    div.box\n      h2= title\n      input(type='checkbox', checked)\n      block\n"
+                + "  +box('first')\n    p static\n  h1 Hello #{name}\n  ul\n    each item in items\n      li(class='item') #{item}\n  if hidden\n    br\n  else\n    p not empty\n  p end" );
+        Map<String, Object> model = new HashMap<String, Object>( );
+        model.put( "name", "world" );
+        model.put( "items", Arrays.asList( "a", "b" ) );
+        model.put( "hidden", false );
+        String strPath = _folder.getRoot( ).getPath( );
+        AbstractJadeTemplateService service = createService( );
+        service.init( strPath );
+        String strExpected = service.loadTemplate( strPath, "page.jade", Locale.FRENCH, model ).getHtml( );
+        AbstractJadeTemplateService foldingService = createService( );
+        foldingService.setStaticSegmentFolding( true );
+        foldingService.init( strPath );
+        Assert.assertEquals( strExpected, foldingService.loadTemplate( strPath, "page.jade", Locale.FRENCH, model ).getHtml( ) );
+        Assert.assertEquals( strExpected, foldingService.loadTemplate( strPath, "page.jade", Locale.FRENCH, model ).getHtml( ) );
+        Assert.assertEquals( "<p>a</p><p>b</p><p>world</p>", foldingService.loadTemplate( "p a\np b\np #{name}", Locale.FRENCH, model ).getHtml( ) );
+    }
+
+    @Test
+    public void testCompiledExpressions( ) throws Exception
+    {
+        write( "page.jade", "h1 Hello #{user.name} !{markup}\np= user.address.city\np!= markup\np= items.size()\n"
+                + "- var total = items.size()\nul\n  each item in items\n    li(class=item) #{item} of #{total}\np #{unknown.name}" );
+        Map<String, Object> model = new HashMap<String, Object>( );
+        model.put( "user", new CompiledExpressionTest.User( ) );
+        model.put( "markup", "<b>bold</b>" );
+        model.put( "items", Arrays.asList( "a", "b" ) );
+        String strPath = _folder.getRoot( ).getPath( );
+        AbstractJadeTemplateService service = createService( );
+        service.init( strPath );
+        String strExpected = service.loadTemplate( strPath, "page.jade", Locale.FRENCH, model ).getHtml( );
+        Assert.assertTrue( strExpected.startsWith( "<h1>Hello john <b>bold</b></h1><p>Paris</p>" ) );
+        AbstractJadeTemplateService compiledService = createService( );
+        compiledService.setCompiledExpressions( true );
+        compiledService.setStaticSegmentFolding( true );
+        compiledService.init( strPath );
+        Assert.assertEquals( strExpected, compiledService.loadTemplate( strPath, "page.jade", Locale.FRENCH, model ).getHtml( ) );
+        Assert.assertEquals( "<p>john &amp; co</p>", compiledService.loadTemplate( "p #{user.name} &amp; co", Locale.FRENCH, model ).getHtml( ) );
+    }
+
+    @Test
+    public void testLoadTemplates( ) throws Exception
+    {
+        write( "header.jade", "header= title" );
+        write( "content.jade", "p= title" );
+        String strPath = _folder.getRoot( ).getPath( );
+        AbstractJadeTemplateService service = createService( );
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            service.setAsyncExecutor( executor );
+            service.init( strPath );
+            Map<String, Object> model = Collections.<String, Object>singletonMap( "title", "page" );
+            Assert.assertEquals( "<p>page</p>", service.loadTemplateAsync( strPath, "content.jade", Locale.FRENCH, model ).get( ).getHtml( ) );
+            Assert.assertEquals( "<p>string</p>", service.loadTemplateAsync( "p string", Locale.FRENCH, null ).get( ).getHtml( ) );
+
+            List<HtmlTemplate> listTemplates = service.loadTemplates( Arrays.asList(
+                    new JadeTemplateRequest( strPath, "header.jade", Locale.FRENCH, model ),
+                    new JadeTemplateRequest( strPath, "content.jade", Locale.FRENCH, model ),
+                    new JadeTemplateRequest( strPath, "header.jade", Locale.FRENCH, Collections.singletonMap( "title", "other" ) ) ) );
+            Assert.assertEquals( 3, listTemplates.size( ) );
+            Assert.assertEquals( "<header>page</header>", listTemplates.get( 0 ).getHtml( ) );
+            Assert.assertEquals( "<p>page</p>", listTemplates.get( 1 ).getHtml( ) );
+            Assert.assertEquals( "<header>other</header>", listTemplates.get( 2 ).getHtml( ) );
+            Assert.assertTrue( service.loadTemplates( Collections.<JadeTemplateRequest>emptyList( ) ).isEmpty( ) );
+
+            try
+            {
+                service.loadTemplates( Arrays.asList( new JadeTemplateRequest( strPath, "header.jade", Locale.FRENCH, model ),
+                        new JadeTemplateRequest( strPath, "missing.jade", Locale.FRENCH, model ) ) );
+                Assert.fail( "the missing template should fail" );
+            } catch ( RuntimeException e )
+            {
+                // expected
+            }
+            try
+            {
+                service.loadTemplateAsync( strPath, "missing.jade", Locale.FRENCH, model ).get( );
+                Assert.fail( "the missing template should fail" );
+            } catch ( ExecutionException e )
+            {
+                // expected
+            }
+        } finally
+        {
+            executor.shutdown( );
+        }
+    }
+
+    @Test
+    public void testDefaultAsyncExecutor( ) throws Exception
+    {
+        AbstractJadeTemplateService service = createService( );
+        service.setAsyncParallelism( 2 );
+        service.init( _folder.getRoot( ).getPath( ) );
+        try
+        {
+            Map<String, Object> model = new HashMap<String, Object>( );
+            model.put( "thread", new Object( )
+            {
+                @Override
+                public String toString( )
+                {
+                    return Thread.currentThread( ).getName( );
+                }
+            } );
+            Assert.assertEquals( "<p>jade-async-1</p>", service.loadTemplateAsync( "p= thread", Locale.FRENCH, model ).get( ).getHtml( ) );
+        } finally
+        {
+            service.close( );
+        }
+    }
+
+    @Test
+    public void testLocalizedTemplates( ) throws Exception
+    {
+        write( "page.jade", "p page" );
+        write( "page_fr.jade", "p page fr" );
+        write( "page_fr_CA.jade", "p page fr CA" );
+        String strPath = _folder.getRoot( ).getPath( );
+        AbstractJadeTemplateService service = createService( );
+        service.setLocalizedTemplates( true );
+        service.setTemplateResolutionTtl( -1 );
+        service.init( strPath );
+        Assert.assertEquals( "<p>page fr CA</p>", service.loadTemplate( strPath, "page.jade", Locale.CANADA_FRENCH, null ).getHtml( ) );
+        Assert.assertEquals( "<p>page fr</p>", service.loadTemplate( strPath, "page.jade", Locale.FRANCE, null ).getHtml( ) );
+        Assert.assertEquals( "<p>page</p>", service.loadTemplate( strPath, "page.jade", Locale.ENGLISH, null ).getHtml( ) );
+        Assert.assertEquals( "<p>page</p>", service.loadTemplate( strPath, "page.jade", null, null ).getHtml( ) );
+
+        write( "other.jade", "p other" );
+        Assert.assertEquals( "<p>other</p>", service.loadTemplate( strPath, "other.jade", Locale.ENGLISH, null ).getHtml( ) );
+        write( "page_en.jade", "p page en" );
+        write( "other_en.jade", "p other en" );
+        Assert.assertEquals( "<p>page</p>", service.loadTemplate( strPath, "page.jade", Locale.ENGLISH, null ).getHtml( ) );
+        service.invalidate( "page_en.jade" );
+        Assert.assertEquals( "<p>page en</p>", service.loadTemplate( strPath, "page.jade", Locale.ENGLISH, null ).getHtml( ) );
+        // only the variants of the invalidated template are resolved again
+        Assert.assertEquals( "<p>other</p>", service.loadTemplate( strPath, "other.jade", Locale.ENGLISH, null ).getHtml( ) );
+
+        Assert.assertEquals( Arrays.asList( "dir/page_fr_CA.jade", "dir/page_fr.jade" ),
+            LocalizedTemplateResolver.getVariants( "dir/page.jade", Locale.CANADA_FRENCH ) );
+    }
+
+    private void assertLimitExceeded( Throwable e )
+    {
+        for ( Throwable cause = e; cause != null; cause = cause.getCause( ) )
+        {
+            if ( cause instanceof JadeLimitExceededException )
+            {
+                return;
+            }
+        }
+        Assert.fail( "the limit should have been exceeded : " + e );
+    }
+
+    @Test
+    public void testLimits( ) throws Exception
+    {
+        StringBuilder sbLarge = new StringBuilder( );
+        for ( int i = 0; i < 100; i++ )
+        {
+            sbLarge.append( "p line " ).append( i ).append( '\n' );
+        }
+        write( "large.jade", sbLarge.toString( ) );
+        write( "page.jade", "include large" );
+        write( "loop.jade", "each item in items\n  p= item" );
+        String strPath = _folder.getRoot( ).getPath( );
+        AbstractJadeTemplateService service = createService( );
+        service.setMaxTemplateSourceSize( 500 );
+        service.setMaxRenderTime( 1 );
+        service.init( strPath );
+        Assert.assertEquals( "<p>small</p>", service.loadTemplate( "p small", Locale.FRENCH, null ).getHtml( ) );
+        try
+        {
+            service.loadTemplate( sbLarge.toString( ), Locale.FRENCH, null );
+            Assert.fail( "the String template is too large" );
+        } catch ( RuntimeException e )
+        {
+            assertLimitExceeded( e );
+        }
+        try
+        {
+            service.loadTemplate( strPath, "page.jade", Locale.FRENCH, null );
+            Assert.fail( "the included template is too large" );
+        } catch ( RuntimeException e )
+        {
+            assertLimitExceeded( e );
+        }
+        List<Integer> listItems = new ArrayList<Integer>( );
+        for ( int i = 0; i < 200000; i++ )
+        {
+            listItems.add( i );
+        }
+        try
+        {
+            service.loadTemplate( strPath, "loop.jade", Locale.FRENCH, Collections.singletonMap( "items", listItems ) );
+            Assert.fail( "the rendering is too long" );
+        } catch ( RuntimeException e )
+        {
+            assertLimitExceeded( e );
+        }
+    }
+
+
+    @Test
+    public void testSharedVariables( ) throws Exception
+    {
+        write( "page.jade", "p #{site} #{title}\n- site = 'local'\np= site\n:cdata\n  raw" );
+        String strPath = _folder.getRoot( ).getPath( );
+        AbstractJadeTemplateService service = createService( );
+        service.init( strPath );
+        service.setSharedVariable( "site", "lutece" );
+        service.setSharedVariable( "title", "shared" );
+        Map<String, Object> model = Collections.<String, Object>singletonMap( "title", "page" );
+        Assert.assertEquals( "<p>lutece page</p><p>local</p><![CDATA[\nraw\n]]>", service.loadTemplate( strPath, "page.jade", Locale.FRENCH, model ).getHtml( ) );
+        Assert.assertEquals( "<p>lutece shared</p>", service.loadTemplate( "p #{site} #{title}", Locale.FRENCH, null ).getHtml( ) );
+
+        service.setSharedVariable( "site", "paris" );
+        Assert.assertEquals( "<p>paris</p>", service.loadTemplate( "p= site", Locale.FRENCH, model ).getHtml( ) );
+    }
+
+    @Test
+    public void testCompactOutput( ) throws Exception
+    {
+        write( "page.jade", "// comment\n//if IE\n  p ie\np\n  | Hello\n  |    #{name}  \n  |   !\npre\n  | a   b\n"
+                + "mixin box\n  div\n    // only a comment\n+box" );
+        Map<String, Object> model = Collections.<String, Object>singletonMap( "name", "john" );
+        String strPath = _folder.getRoot( ).getPath( );
+        AbstractJadeTemplateService service = createService( );
+        service.setCompactOutput( true );
+        service.setStaticSegmentFolding( true );
+        service.init( strPath );
+        Assert.assertEquals( "<!--[if IE]><p>ie</p><![endif]--><p>Hello john !</p><pre>a   b</pre><div></div>",
+                service.loadTemplate( strPath, "page.jade", Locale.FRENCH, model ).getHtml( ) );
+        Assert.assertEquals( "<p>a b</p>", service.loadTemplate( "p a\n  // comment\n  |    b", Locale.FRENCH, null ).getHtml( ) );
+    }
+
+    @Test
+    public void testRenderWriter( ) throws Exception
+    {
+        write( "layout.jade", "html\n  body\n    block content" );
+        write( "page.jade", "extends layout\nblock content\n  h1= title\n  ul\n    each item in items\n      li= item" );
+        Map<String, Object> model = new HashMap<String, Object>( );
+        model.put( "title", "Title" );
+        model.put( "items", Arrays.asList( "a", "b" ) );
+        String strPath = _folder.getRoot( ).getPath( );
+        AbstractJadeTemplateService service = createService( );
+        service.init( strPath );
+
+        StringWriter out = new StringWriter( );
+        service.render( strPath, "page.jade", Locale.FRENCH, model, out );
+        Assert.assertEquals( service.loadTemplate( strPath, "page.jade", Locale.FRENCH, model ).getHtml( ), out.toString( ) );
+        out = new StringWriter( );
+        service.render( "p= title", Locale.FRENCH, model, out );
+        Assert.assertEquals( service.loadTemplate( "p= title", Locale.FRENCH, model ).getHtml( ), out.toString( ) );
+    }
+
+    @Test
+    public void testRenderOutputStream( ) throws Exception
+    {
+        write( "page.jade", "doctype html\nhtml\n  body\n    h1 Caf\u00e9 \u20ac\n    p= name\n    ul\n      each item in items\n        li \ud83d\ude00 #{item}" );
+        Map<String, Object> model = new HashMap<String, Object>( );
+        model.put( "name", "Jos\u00e9" );
+        model.put( "items", Arrays.asList( "a", "\u00e9" ) );
+        String strPath = _folder.getRoot( ).getPath( );
+        AbstractJadeTemplateService service = createService( );
+        service.setStaticSegmentFolding( true );
+        service.setPreEncodedSegments( true );
+        service.init( strPath );
+        String strExpected = service.loadTemplate( strPath, "page.jade", Locale.FRENCH, model ).getHtml( );
+        Assert.assertTrue( strExpected.contains( "<h1>Caf\u00e9 \u20ac</h1><p>Jos&eacute;</p>" ) );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream( );
+        service.render( strPath, "page.jade", Locale.FRENCH, model, out );
+        Assert.assertArrayEquals( strExpected.getBytes( StandardCharsets.UTF_8 ), out.toByteArray( ) );
+        out.reset( );
+        service.render( "p!= name", Locale.FRENCH, model, out );
+        Assert.assertEquals( "<p>Jos\u00e9</p>", new String( out.toByteArray( ), StandardCharsets.UTF_8 ) );
+    }
+
+    @Test
+    public void testRenderWriterFailure( ) throws Exception
+    {
+        final IOException error = new IOException( "broken pipe" );
+        final int[] writes = new int[1];
+        Writer out = new Writer( )
+        {
+            @Override
+            public void write( char[] cbuf, int off, int len ) throws IOException
+            {
+                writes[0]++;
+                throw error;
+            }
+
+            @Override
+            public void flush( )
+            {
+            }
+
+            @Override
+            public void close( )
+            {
+            }
+        };
+        AbstractJadeTemplateService service = createService( );
+        service.init( _folder.getRoot( ).getPath( ) );
+        try
+        {
+            service.render( "ul\n  each item in items\n    li= item", Locale.FRENCH,
+                    Collections.singletonMap( "items", Arrays.asList( "a", "b", "c" ) ), out );
+            Assert.fail( );
+        } catch ( UncheckedIOException e )
+        {
+            Assert.assertSame( error, e.getCause( ) );
+        }
+        Assert.assertEquals( 1, writes[0] );
+    }
+
+    @Test
+    public void testRenderOutputStreamFailure( ) throws Exception
+    {
+        final IOException error = new IOException( "broken pipe" );
+        final int[] writes = new int[1];
+        OutputStream out = new OutputStream( )
+        {
+            @Override
+            public void write( int b ) throws IOException
+            {
+                write( new byte[] { ( byte ) b }, 0, 1 );
+            }
+
+            @Override
+            public void write( byte[] b, int off, int len ) throws IOException
+            {
+                writes[0]++;
+                throw error;
+            }
+        };
+        List<String> listItems = new ArrayList<String>( );
+        for ( int i = 0; i < 5000; i++ )
+        {
+            listItems.add( "item " + i );
+        }
+        AbstractJadeTemplateService service = createService( );
+        service.init( _folder.getRoot( ).getPath( ) );
+        try
+        {
+            service.render( "ul\n  each item in items\n    li= item", Locale.FRENCH, Collections.singletonMap( "items", listItems ), out );
+            Assert.fail( );
+        } catch ( UncheckedIOException e )
+        {
+            Assert.assertSame( error, e.getCause( ) );
+        }
+        Assert.assertEquals( 1, writes[0] );
+    }
+}
@@ -0,0 +1,72 @@
+package fr.paris.lutece.portal.service.template;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BeanModelMapTest
+{
+
+    public static class Bean
+    {
+        public String getName( )
+        {
+            return "name";
+        }
+
+        public boolean isActive( )
+        {
+            return true;
+        }
+    }
+
+    private static class PrivateBean
+    {
+        public int getCount( )
+        {
+            return 3;
+        }
+    }
+
+    @Test
+    public void testProperties( )
+    {
+        Map<String, Object> map = new BeanModelMap( new Bean( ) );
+        Assert.assertEquals( "name", map.get( "name" ) );
+        Assert.assertEquals( Boolean.TRUE, map.get( "active" ) );
+        Assert.assertTrue( map.containsKey( "name" ) );
+        Assert.assertFalse( map.containsKey( "missing" ) );
+        Assert.assertNull( map.get( "missing" ) );
+        Assert.assertTrue( map.keySet( ).contains( "active" ) );
+        Assert.assertEquals( map.size( ), map.entrySet( ).size( ) );
+    }
+
+    @Test
+    public void testNonPublicClass( )
+    {
+        Map<String, Object> map = new BeanModelMap( new PrivateBean( ) );
+        Assert.assertEquals( 3, map.get( "count" ) );
+    }
+
+    @Test
+    public void testNonExportedClass( )
+    {
+        // the implementation classes are not exported by java.base on JDK 9+
+        Map<String, Object> map = new BeanModelMap( Paths.get( "dir", "file" ) );
+        Assert.assertEquals( 2, map.get( "nameCount" ) );
+        Assert.assertEquals( Paths.get( "file" ), map.get( "fileName" ) );
+
+        map = new BeanModelMap( FileSystems.getDefault( ) );
+        Assert.assertEquals( FileSystems.getDefault( ).getSeparator( ), map.get( "separator" ) );
+    }
+
+    @Test
+    public void testSharedIntrospection( )
+    {
+        Assert.assertSame( BeanProperties.forClass( Bean.class ), BeanProperties.forClass( Bean.class ) );
+    }
+
+}
@@ -0,0 +1,60 @@
+package fr.paris.lutece.portal.service.template;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.neuland.jade4j.exceptions.ExpressionException;
+import de.neuland.jade4j.model.JadeModel;
+
+public class CompiledExpressionTest
+{
+
+    public static class User
+    {
+        public String getName( )
+        {
+            return "john";
+        }
+
+        public Map<String, Object> getAddress( )
+        {
+            return Collections.<String, Object>singletonMap( "city", "Paris" );
+        }
+    }
+
+    private JadeModel createModel( )
+    {
+        Map<String, Object> map = new HashMap<String, Object>( );
+        map.put( "user", new User( ) );
+        map.put( "count", 3 );
+        map.put( "missing.name", "antish" );
+        return new JadeModel( map );
+    }
+
+    @Test
+    public void testPropertyChain( ) throws ExpressionException
+    {
+        JadeModel model = createModel( );
+        Assert.assertTrue( new CompiledExpression( "user.address.city" ).isPropertyChain( ) );
+        Assert.assertEquals( "john", new CompiledExpression( "user.name" ).evaluate( model ) );
+        Assert.assertEquals( "Paris", new CompiledExpression( " user.address.city " ).evaluate( model ) );
+        Assert.assertEquals( "", new CompiledExpression( "undefined" ).evaluateString( model ) );
+    }
+
+    @Test
+    public void testFallback( ) throws ExpressionException
+    {
+        JadeModel model = createModel( );
+        Assert.assertFalse( new CompiledExpression( "count + 1" ).isPropertyChain( ) );
+        Assert.assertFalse( new CompiledExpression( "user.empty" ).isPropertyChain( ) );
+        Assert.assertEquals( 4, new CompiledExpression( "count + 1" ).evaluate( model ) );
+        // unknown getter and null intermediate value are left to the jade evaluator
+        Assert.assertEquals( "", new CompiledExpression( "user.unknown" ).evaluateString( model ) );
+        Assert.assertEquals( "antish", new CompiledExpression( "missing.name" ).evaluate( model ) );
+    }
+
+}
@@ -0,0 +1,100 @@
+package fr.paris.lutece.portal.service.template;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompositeTemplateLoaderTest
+{
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder( );
+
+    private void write( String strName, String strContent ) throws IOException
+    {
+        File file = new File( _folder.getRoot( ), strName );
+        file.getParentFile( ).mkdirs( );
+        Files.write( file.toPath( ), strContent.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    private String read( CompositeTemplateLoader loader, String strName ) throws IOException
+    {
+        try ( BufferedReader reader = new BufferedReader( loader.getReader( strName ) ) )
+        {
+            return reader.readLine( );
+        }
+    }
+
+    @Test
+    public void testRootOrder( ) throws IOException
+    {
+        write( "a/page.jade", "p a" );
+        write( "b/page.jade", "p b" );
+        write( "b/other.jade", "p other" );
+        InMemoryTemplateRoot memory = new InMemoryTemplateRoot( );
+        CompositeTemplateLoader loader = new CompositeTemplateLoader( Arrays.<TemplateRoot> asList( memory,
+                new DirectoryTemplateRoot( _folder.getRoot( ).getPath( ) + "/a" ), new DirectoryTemplateRoot( _folder.getRoot( ).getPath( ) + "/b" ),
+                new ClasspathTemplateRoot( getClass( ).getClassLoader( ), "jade" ) ), -1 );
+
+        Assert.assertEquals( "p a", read( loader, "page.jade" ) );
+        Assert.assertEquals( "p other", read( loader, "other.jade" ) );
+        Assert.assertEquals( "p classpath", read( loader, "classpath.jade" ) );
+
+        memory.put( "page.jade", "p memory" );
+        Assert.assertEquals( "p a", read( loader, "page.jade" ) );
+        loader.invalidate( "page.jade" );
+        Assert.assertEquals( "p memory", read( loader, "page.jade" ) );
+    }
+
+    @Test
+    public void testNegativeResolution( ) throws IOException
+    {
+        CompositeTemplateLoader loader = new CompositeTemplateLoader( Arrays.<TemplateRoot> asList( new DirectoryTemplateRoot( _folder.getRoot( ).getPath( ) ) ), -1 );
+        Assert.assertEquals( 0, loader.getLastModified( "late.jade" ) );
+
+        write( "late.jade", "p late" );
+        Assert.assertEquals( 0, loader.getLastModified( "late.jade" ) );
+        try
+        {
+            loader.getReader( "late.jade" );
+            Assert.fail( );
+        } catch ( FileNotFoundException e )
+        {
+            // resolution cached
+        }
+        loader.clear( );
+        Assert.assertEquals( "p late", read( loader, "late.jade" ) );
+    }
+
+    @Test
+    public void testResolutionTtl( ) throws Exception
+    {
+        CompositeTemplateLoader loader = new CompositeTemplateLoader( Arrays.<TemplateRoot> asList( new DirectoryTemplateRoot( _folder.getRoot( ).getPath( ) ) ), 0 );
+        Assert.assertNull( loader.resolve( "late.jade" ) );
+        write( "late.jade", "p late" );
+        Assert.assertNotNull( loader.resolve( "late.jade" ) );
+    }
+
+    @Test
+    public void testMaxResolutions( ) throws IOException
+    {
+        write( "page.jade", "p page" );
+        CompositeTemplateLoader loader = new CompositeTemplateLoader( Arrays.<TemplateRoot> asList( new DirectoryTemplateRoot( _folder.getRoot( ).getPath( ) ) ), -1, 10 );
+        for ( int i = 0; i < 100; i++ )
+        {
+            Assert.assertNull( loader.resolve( "missing" + i + ".jade" ) );
+        }
+        Assert.assertEquals( 10, loader.getResolutionCount( ) );
+        Assert.assertEquals( "p page", read( loader, "page.jade" ) );
+        Assert.assertEquals( 10, loader.getResolutionCount( ) );
+    }
+}
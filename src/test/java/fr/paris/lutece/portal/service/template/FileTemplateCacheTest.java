@@ -0,0 +1,310 @@
+package fr.paris.lutece.portal.service.template;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.neuland.jade4j.parser.Parser;
+
+import de.neuland.jade4j.template.JadeTemplate;
+import de.neuland.jade4j.template.TemplateLoader;
+
+public class FileTemplateCacheTest
+{
+
+    private static class TestLoader implements TemplateLoader
+    {
+        private volatile long _lLastModified = 1;
+
+        @Override
+        public long getLastModified( String name )
+        {
+            return _lLastModified;
+        }
+
+        @Override
+        public Reader getReader( String name ) throws IOException
+        {
+            return new StringReader( "" );
+        }
+    }
+
+    private static class CountingCompiler implements TemplateCompiler
+    {
+        private final AtomicInteger _nCount = new AtomicInteger( );
+        private final CountDownLatch _latch;
+
+        CountingCompiler( CountDownLatch latch )
+        {
+            _latch = latch;
+        }
+
+        @Override
+        public JadeTemplate compile( String strName, TemplateLoader templateLoader ) throws IOException
+        {
+            _nCount.incrementAndGet( );
+            templateLoader.getReader( strName );
+            if ( strName.startsWith( "page" ) )
+            {
+                templateLoader.getReader( "layout.jade" );
+            }
+            try
+            {
+                _latch.await( );
+            } catch ( InterruptedException e )
+            {
+                throw new IOException( e );
+            }
+            if ( strName.startsWith( "broken" ) )
+            {
+                throw new IOException( strName );
+            }
+            return new JadeTemplate( );
+        }
+    }
+
+    @Test
+    public void testSingleCompilation( ) throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch( 1 );
+        CountingCompiler compiler = new CountingCompiler( latch );
+        final FileTemplateCache cache = new FileTemplateCache( new TestLoader( ), compiler, 10 );
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            List<Future<JadeTemplate>> results = new ArrayList<Future<JadeTemplate>>( );
+            for ( int i = 0; i < 8; i++ )
+            {
+                results.add( executor.submit( new Callable<JadeTemplate>( )
+                {
+                    @Override
+                    public JadeTemplate call( ) throws Exception
+                    {
+                        return cache.get( "page.jade", true );
+                    }
+                } ) );
+            }
+            Thread.sleep( 100 );
+            latch.countDown( );
+            JadeTemplate template = results.get( 0 ).get( );
+            for ( Future<JadeTemplate> result : results )
+            {
+                Assert.assertSame( template, result.get( ) );
+            }
+            Assert.assertEquals( 1, compiler._nCount.get( ) );
+        } finally
+        {
+            executor.shutdownNow( );
+        }
+    }
+
+    @Test
+    public void testModification( ) throws IOException
+    {
+        CountingCompiler compiler = new CountingCompiler( new CountDownLatch( 0 ) );
+        TestLoader loader = new TestLoader( );
+        FileTemplateCache cache = new FileTemplateCache( loader, compiler, 10 );
+        JadeTemplate template = cache.get( "page.jade", true );
+        Assert.assertSame( template, cache.get( "page.jade", true ) );
+        loader._lLastModified = 2;
+        Assert.assertNotSame( template, cache.get( "page.jade", true ) );
+        Assert.assertEquals( 2, compiler._nCount.get( ) );
+    }
+
+    @Test
+    public void testInvalidate( ) throws IOException
+    {
+        CountingCompiler compiler = new CountingCompiler( new CountDownLatch( 0 ) );
+        FileTemplateCache cache = new FileTemplateCache( new TestLoader( ), compiler, 10 );
+        JadeTemplate page = cache.get( "page.jade", false );
+        JadeTemplate other = cache.get( "other.jade", false );
+        cache.invalidate( "layout.jade" );
+        Assert.assertNotSame( page, cache.get( "page.jade", false ) );
+        Assert.assertSame( other, cache.get( "other.jade", false ) );
+        cache.invalidate( "other.jade" );
+        Assert.assertNotSame( other, cache.get( "other.jade", false ) );
+        Assert.assertEquals( 4, compiler._nCount.get( ) );
+    }
+
+    @Test
+    public void testInvalidateInProgress( ) throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch( 1 );
+        final CountingCompiler compiler = new CountingCompiler( latch );
+        final FileTemplateCache cache = new FileTemplateCache( new TestLoader( ), compiler, 10 );
+        ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try
+        {
+            List<Future<JadeTemplate>> results = new ArrayList<Future<JadeTemplate>>( );
+            for ( final String strName : new String[] { "page.jade", "other.jade" } )
+            {
+                results.add( executor.submit( new Callable<JadeTemplate>( )
+                {
+                    @Override
+                    public JadeTemplate call( ) throws Exception
+                    {
+                        return cache.get( strName, false );
+                    }
+                } ) );
+            }
+            while ( compiler._nCount.get( ) < 2 )
+            {
+                Thread.sleep( 10 );
+            }
+            Thread.sleep( 50 );
+            // page.jade has read layout.jade, other.jade has not
+            cache.invalidate( "layout.jade" );
+            latch.countDown( );
+            JadeTemplate page = results.get( 0 ).get( );
+            JadeTemplate other = results.get( 1 ).get( );
+
+            Assert.assertSame( other, cache.get( "other.jade", false ) );
+            Assert.assertNotSame( page, cache.get( "page.jade", false ) );
+            Assert.assertEquals( 3, compiler._nCount.get( ) );
+        } finally
+        {
+            executor.shutdownNow( );
+        }
+    }
+
+    @Test
+    public void testConcurrentInvalidate( ) throws Exception
+    {
+        final AtomicInteger nVersion = new AtomicInteger( );
+        TemplateLoader loader = new TestLoader( )
+        {
+            @Override
+            public Reader getReader( String name )
+            {
+                return new StringReader( String.valueOf( nVersion.get( ) ) );
+            }
+        };
+        final Map<JadeTemplate, Integer> mapVersions = new ConcurrentHashMap<JadeTemplate, Integer>( );
+        TemplateCompiler compiler = new TemplateCompiler( )
+        {
+            @Override
+            public JadeTemplate compile( String strName, TemplateLoader templateLoader ) throws IOException
+            {
+                templateLoader.getReader( strName );
+                int nLayoutVersion = Integer.parseInt( new BufferedReader( templateLoader.getReader( "layout.jade" ) ).readLine( ) );
+                Thread.yield( );
+                JadeTemplate template = new JadeTemplate( );
+                mapVersions.put( template, nLayoutVersion );
+                return template;
+            }
+        };
+        final FileTemplateCache cache = new FileTemplateCache( loader, compiler, 10 );
+        final AtomicBoolean bRunning = new AtomicBoolean( true );
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try
+        {
+            List<Future<Void>> results = new ArrayList<Future<Void>>( );
+            for ( int i = 0; i < 4; i++ )
+            {
+                results.add( executor.submit( new Callable<Void>( )
+                {
+                    @Override
+                    public Void call( ) throws Exception
+                    {
+                        while ( bRunning.get( ) )
+                        {
+                            cache.get( "page.jade", false );
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+            for ( int i = 1; i <= 2000; i++ )
+            {
+                nVersion.set( i );
+                cache.invalidate( "layout.jade" );
+                int nCachedVersion = mapVersions.get( cache.get( "page.jade", false ) );
+                Assert.assertTrue( "stale template of version " + nCachedVersion + " cached after version " + i, nCachedVersion >= i );
+            }
+            bRunning.set( false );
+            for ( Future<Void> result : results )
+            {
+                result.get( );
+            }
+        } finally
+        {
+            bRunning.set( false );
+            executor.shutdownNow( );
+        }
+    }
+
+    @Test
+    public void testFailureNotCached( )
+    {
+        CountingCompiler compiler = new CountingCompiler( new CountDownLatch( 0 ) );
+        FileTemplateCache cache = new FileTemplateCache( new TestLoader( ), compiler, 10 );
+        for ( int i = 0; i < 2; i++ )
+        {
+            try
+            {
+                cache.get( "broken.jade", true );
+                Assert.fail( );
+            } catch ( IOException e )
+            {
+                Assert.assertEquals( "broken.jade", e.getMessage( ) );
+            }
+        }
+        Assert.assertEquals( 2, compiler._nCount.get( ) );
+        Assert.assertEquals( 0, cache.size( ) );
+    }
+
+    @Test
+    public void testWeightedCapacity( ) throws Exception
+    {
+        TemplateLoader loader = new TestLoader( )
+        {
+            @Override
+            public Reader getReader( String name )
+            {
+                StringBuilder sbTemplate = new StringBuilder( );
+                for ( int i = 0; i < ( name.startsWith( "large" ) ? 1000 : 10 ); i++ )
+                {
+                    sbTemplate.append( "p paragraph " ).append( i ).append( '\n' );
+                }
+                return new StringReader( sbTemplate.toString( ) );
+            }
+        };
+        TemplateCompiler compiler = new TemplateCompiler( )
+        {
+            @Override
+            public JadeTemplate compile( String strName, TemplateLoader templateLoader ) throws IOException
+            {
+                JadeTemplate template = new JadeTemplate( );
+                template.setRootNode( new Parser( strName, templateLoader ).parse( ) );
+                return template;
+            }
+        };
+        FileTemplateCache cache = new FileTemplateCache( loader, compiler, 1000, 100000, null );
+        cache.get( "small1.jade", true );
+        cache.get( "small2.jade", true );
+        long lSmallWeight = cache.weightedSize( );
+        Assert.assertTrue( lSmallWeight > 2 );
+        Assert.assertEquals( 2, cache.size( ) );
+
+        // a template heavier than the whole cache is not kept
+        cache.get( "large.jade", true );
+        Assert.assertEquals( lSmallWeight, cache.weightedSize( ) );
+        Assert.assertEquals( 2, cache.size( ) );
+    }
+
+}
@@ -3,6 +3,7 @@ package fr.paris.lutece.portal.service.template;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -12,6 +13,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import fr.paris.lutece.util.html.HtmlTemplate;
+import freemarker.template.TemplateModelException;
 
 public class FreemarkerDirectiveTest
 {
@@ -34,7 +36,144 @@ public class FreemarkerDirectiveTest
         assertTemplateResult(testTemplate, model );
     }
 
+    @Test
+    public void testList( ) throws URISyntaxException, IOException
+    {
+        final String testTemplate = "freemarkerTemplate_list.html";
+        Map<String, Object> model = new HashMap<String, Object>();
+        model.put( "items", Arrays.asList( "a", "b" ) );
+        assertTemplateResult(testTemplate, model );
+    }
+
+    @Test
+    public void testCacheKey( ) throws URISyntaxException, IOException
+    {
+        String templateDir = Paths.get( getClass( ).getResource( "/freemarkerTemplate.html" ).toURI( ) ).getParent( ).toString( );
+        IFreeMarkerTemplateService freemarkerTemplaceService = createServices( templateDir );
+        Map<String, String> model = new HashMap<String, String>();
+        model.put( "variable", "first" );
+        Assert.assertEquals( "<p>first</p>", freemarkerTemplaceService.loadTemplate( templateDir, "freemarkerTemplate_cache.html", Locale.FRENCH, model ).getHtml( ) );
+        model.put( "variable", "second" );
+        Assert.assertEquals( "<p>first</p>", freemarkerTemplaceService.loadTemplate( templateDir, "freemarkerTemplate_cache.html", Locale.FRENCH, model ).getHtml( ) );
+    }
+
+    @Test
+    public void testCacheKeyStringTtl( ) throws URISyntaxException, IOException
+    {
+        String templateDir = Paths.get( getClass( ).getResource( "/freemarkerTemplate.html" ).toURI( ) ).getParent( ).toString( );
+        IFreeMarkerTemplateService freemarkerTemplaceService = createServices( templateDir );
+        Map<String, String> model = new HashMap<String, String>();
+        model.put( "variable", "first" );
+        Assert.assertEquals( "<p>first</p>", freemarkerTemplaceService.loadTemplate( templateDir, "freemarkerTemplate_cache_string_ttl.html", Locale.FRENCH, model ).getHtml( ) );
+        model.put( "variable", "second" );
+        Assert.assertEquals( "<p>first</p>", freemarkerTemplaceService.loadTemplate( templateDir, "freemarkerTemplate_cache_string_ttl.html", Locale.FRENCH, model ).getHtml( ) );
+    }
+
+    @Test
+    public void testInvalidParameters( ) throws URISyntaxException, IOException
+    {
+        assertTemplateModelException( "freemarkerTemplate_unknown_parameter.html", "cachekey" );
+        assertTemplateModelException( "freemarkerTemplate_invalid_ttl.html", "5m" );
+    }
+
+    @Test
+    public void testStaticSegmentFolding( ) throws URISyntaxException, IOException
+    {
+        Map<String, Object> model = new HashMap<String, Object>();
+        model.put( "variable", "value" );
+        model.put( "items", Arrays.asList( "a", "b" ) );
+        assertTemplateResult( "freemarkerTemplate.html", model, true );
+        assertTemplateResult( "freemarkerTemplate_include.html", model, true );
+        assertTemplateResult( "freemarkerTemplate_list.html", model, true );
+    }
+
+    @Test
+    public void testStaticBody( ) throws URISyntaxException, IOException
+    {
+        String templateDir = Paths.get( getClass( ).getResource( "/freemarkerTemplate.html" ).toURI( ) ).getParent( ).toString( );
+        JadeMetrics metrics = new JadeMetrics( );
+        AbstractJadeTemplateService jadeTemplateService = createJadeService( );
+        jadeTemplateService.setMetricsListener( metrics );
+        jadeTemplateService.init( templateDir );
+        IFreeMarkerTemplateService freemarkerTemplaceService = createServices( templateDir, jadeTemplateService );
+        Map<String, String> model = new HashMap<String, String>();
+        model.put( "variable", "first" );
+        Assert.assertEquals( "<p>first</p>", freemarkerTemplaceService.loadTemplate( templateDir, "freemarkerTemplate_static.html", Locale.FRENCH, model ).getHtml( ) );
+        model.put( "variable", "second" );
+        Assert.assertEquals( "<p>second</p>", freemarkerTemplaceService.loadTemplate( templateDir, "freemarkerTemplate_static.html", Locale.FRENCH, model ).getHtml( ) );
+        // the static body is compiled once, then rendered without String template lookup
+        Assert.assertEquals( 1, metrics.getTemplateStatistics( IJadeMetricsListener.STRING_TEMPLATE ).getLookupCount( ) );
+
+        jadeTemplateService.resetCache( );
+        Assert.assertEquals( "<p>second</p>", freemarkerTemplaceService.loadTemplate( templateDir, "freemarkerTemplate_static.html", Locale.FRENCH, model ).getHtml( ) );
+        Assert.assertEquals( 2, metrics.getTemplateStatistics( IJadeMetricsListener.STRING_TEMPLATE ).getLookupCount( ) );
+    }
+
     private void assertTemplateResult( String testTemplate, Object model  ) throws IOException, URISyntaxException
+    {
+        assertTemplateResult( testTemplate, model, false );
+    }
+
+    private void assertTemplateResult( String testTemplate, Object model, boolean bStaticSegmentFolding ) throws IOException, URISyntaxException
+    {
+        String templateDir = Paths.get( getClass( ).getResource( "/freemarkerTemplate.html" ).toURI( ) ).getParent( ).toString( );
+        IFreeMarkerTemplateService freemarkerTemplaceService = createServices( templateDir, bStaticSegmentFolding );
+        HtmlTemplate template = freemarkerTemplaceService.loadTemplate( templateDir, testTemplate, Locale.FRENCH, model );
+        try (Scanner scan = new Scanner(getClass( ).getResourceAsStream("/result/" + testTemplate), "UTF-8") ) {
+            String expected = scan.useDelimiter("\\A").next();
+            Assert.assertEquals( expected, template.getHtml( ) );
+        }
+    }
+
+    private void assertTemplateModelException( String testTemplate, String strMessage ) throws URISyntaxException
+    {
+        String templateDir = Paths.get( getClass( ).getResource( "/freemarkerTemplate.html" ).toURI( ) ).getParent( ).toString( );
+        IFreeMarkerTemplateService freemarkerTemplaceService = createServices( templateDir );
+        Map<String, String> model = new HashMap<String, String>();
+        model.put( "variable", "value" );
+        try
+        {
+            freemarkerTemplaceService.loadTemplate( templateDir, testTemplate, Locale.FRENCH, model );
+            Assert.fail( );
+        } catch ( RuntimeException e )
+        {
+            Throwable cause = e;
+            while ( cause != null && !( cause instanceof TemplateModelException ) )
+            {
+                cause = cause.getCause( );
+            }
+            Assert.assertNotNull( cause );
+            Assert.assertTrue( cause.getMessage( ), cause.getMessage( ).contains( strMessage ) );
+        }
+    }
+
+    private IFreeMarkerTemplateService createServices( String templateDir )
+    {
+        return createServices( templateDir, false );
+    }
+
+    private IFreeMarkerTemplateService createServices( String templateDir, boolean bStaticSegmentFolding )
+    {
+        AbstractJadeTemplateService jadeTemplateService = createJadeService( );
+        jadeTemplateService.setStaticSegmentFolding( bStaticSegmentFolding );
+        jadeTemplateService.init( templateDir );
+        return createServices( templateDir, jadeTemplateService );
+    }
+
+    private AbstractJadeTemplateService createJadeService( )
+    {
+        return new AbstractJadeTemplateService( )
+        {
+            
+            @Override
+            public String getAbsolutePathFromRelativePath( String strPath )
+            {
+                return strPath;
+            }
+        };
+    }
+
+    private IFreeMarkerTemplateService createServices( String templateDir, AbstractJadeTemplateService jadeTemplateService )
     {
         IFreeMarkerTemplateService freemarkerTemplaceService = new AbstractFreeMarkerTemplateService( )
         {
@@ -51,25 +190,9 @@ public class FreemarkerDirectiveTest
                 return arg0;
             }
         };
-        String templateDir = Paths.get( getClass( ).getResource( "/freemarkerTemplate.html" ).toURI( ) ).getParent( ).toString( );
         freemarkerTemplaceService.init( templateDir );
-        IJadeTemplateService jadeTemplateService = new AbstractJadeTemplateService( )
-        {
-            
-            @Override
-            public String getAbsolutePathFromRelativePath( String strPath )
-            {
-                // TODO Auto-generated method stub
-                return strPath;
-            }
-        };
-        jadeTemplateService.init( templateDir );
         freemarkerTemplaceService.setSharedVariable( "jade", new FreemarkerDirective( jadeTemplateService ) );
-        HtmlTemplate template = freemarkerTemplaceService.loadTemplate( templateDir, testTemplate, Locale.FRENCH, model );
-        try (Scanner scan = new Scanner(getClass( ).getResourceAsStream("/result/" + testTemplate), "UTF-8") ) {
-            String expected = scan.useDelimiter("\\A").next();
-            Assert.assertEquals( expected, template.getHtml( ) );
-        }
+        return freemarkerTemplaceService;
     }
 
 }
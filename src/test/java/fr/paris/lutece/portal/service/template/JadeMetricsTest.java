@@ -0,0 +1,76 @@
+package fr.paris.lutece.portal.service.template;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JadeMetricsTest
+{
+
+    @Test
+    public void testStatistics( )
+    {
+        JadeMetrics metrics = new JadeMetrics( );
+        metrics.onLookup( "a.jade", false, 10 );
+        metrics.onCompile( "a.jade", 8 );
+        metrics.onLookup( "a.jade", true, 1 );
+        metrics.onRender( "a.jade", 100, 12 );
+        metrics.onRender( "a.jade", 200, 12 );
+        metrics.onRender( "b.jade", 1000, 5 );
+
+        List<JadeTemplateStatistics> listStatistics = metrics.getTemplateStatistics( );
+        Assert.assertEquals( 2, listStatistics.size( ) );
+        Assert.assertEquals( "b.jade", listStatistics.get( 0 ).getTemplateName( ) );
+
+        JadeTemplateStatistics statistics = metrics.getTemplateStatistics( "a.jade" );
+        Assert.assertEquals( 2, statistics.getLookupCount( ) );
+        Assert.assertEquals( 0.5, statistics.getCacheHitRatio( ), 0 );
+        Assert.assertEquals( 1, statistics.getCompileCount( ) );
+        Assert.assertEquals( 8, statistics.getCompileTime( ) );
+        Assert.assertEquals( 2, statistics.getRenderCount( ) );
+        Assert.assertEquals( 300, statistics.getRenderTime( ) );
+        Assert.assertEquals( 24, statistics.getOutputSize( ) );
+
+        metrics.reset( );
+        Assert.assertTrue( metrics.getTemplateStatistics( ).isEmpty( ) );
+    }
+
+    @Test
+    public void testHistogram( )
+    {
+        LatencyHistogram histogram = new LatencyHistogram( );
+        for ( long l = 1; l <= 1000; l++ )
+        {
+            histogram.record( l * 1000 );
+        }
+        Assert.assertEquals( 1000, histogram.getCount( ) );
+        long lMedian = histogram.getPercentile( 50 );
+        Assert.assertTrue( lMedian > 500000 * 0.85 && lMedian <= 500000 );
+        long l99 = histogram.getPercentile( 99 );
+        Assert.assertTrue( l99 > 990000 * 0.85 && l99 <= 990000 );
+        for ( int i = 0; i < 200; i++ )
+        {
+            Assert.assertEquals( i, LatencyHistogram.getBucket( LatencyHistogram.getLowerBound( i ) ) );
+        }
+    }
+
+    @Test
+    public void testRegisterMBean( ) throws Exception
+    {
+        JadeMetrics metrics = new JadeMetrics( );
+        metrics.onRender( "a.jade", 100, 12 );
+        metrics.registerMBean( JadeMetrics.DEFAULT_OBJECT_NAME );
+        try
+        {
+            Object statistics = ManagementFactory.getPlatformMBeanServer( ).getAttribute( new ObjectName( JadeMetrics.DEFAULT_OBJECT_NAME ), "TemplateStatistics" );
+            Assert.assertEquals( 1, ( (Object[]) statistics ).length );
+        } finally
+        {
+            metrics.unregisterMBean( JadeMetrics.DEFAULT_OBJECT_NAME );
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package fr.paris.lutece.portal.service.template;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LocalizedTemplateResolverTest
+{
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder( );
+
+    private void write( String strName, String strContent ) throws IOException
+    {
+        File file = new File( _folder.getRoot( ), strName );
+        file.getParentFile( ).mkdirs( );
+        Files.write( file.toPath( ), strContent.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    @Test
+    public void testMaxResolutions( ) throws IOException
+    {
+        write( "page.jade", "p page" );
+        write( "page_fr.jade", "p page fr" );
+        CompositeTemplateLoader loader = new CompositeTemplateLoader( Arrays.<TemplateRoot> asList( new DirectoryTemplateRoot( _folder.getRoot( ).getPath( ) ) ), -1 );
+        LocalizedTemplateResolver resolver = new LocalizedTemplateResolver( loader, -1, 10 );
+        for ( int i = 0; i < 100; i++ )
+        {
+            Assert.assertEquals( "page.jade", resolver.resolve( "page.jade", new Locale( "l" + i ) ) );
+        }
+        Assert.assertEquals( 10, resolver.getResolutionCount( ) );
+        Assert.assertEquals( "page_fr.jade", resolver.resolve( "page.jade", Locale.FRANCE ) );
+        Assert.assertEquals( 10, resolver.getResolutionCount( ) );
+    }
+}
@@ -0,0 +1,33 @@
+package fr.paris.lutece.portal.service.template;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OutputBufferPoolTest
+{
+
+    @Test
+    public void testReuse( )
+    {
+        OutputBufferPool pool = new OutputBufferPool( 1 );
+        OutputBuffer buffer = pool.acquire( 100 );
+        Assert.assertTrue( buffer.capacity( ) >= 100 );
+        buffer.write( "content" );
+        pool.release( buffer );
+
+        OutputBuffer reused = pool.acquire( 1000 );
+        Assert.assertSame( buffer, reused );
+        Assert.assertEquals( 0, reused.length( ) );
+        Assert.assertTrue( reused.capacity( ) >= 1000 );
+        Assert.assertNotSame( reused, pool.acquire( 100 ) );
+    }
+
+    @Test
+    public void testOversizedBuffer( )
+    {
+        OutputBufferPool pool = new OutputBufferPool( 1 );
+        OutputBuffer buffer = pool.acquire( OutputBufferPool.MAX_POOLED_CAPACITY + 1 );
+        pool.release( buffer );
+        Assert.assertNotSame( buffer, pool.acquire( 100 ) );
+    }
+}
@@ -0,0 +1,27 @@
+package fr.paris.lutece.portal.service.template;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OutputSizePredictorTest
+{
+
+    @Test
+    public void testPredict( )
+    {
+        OutputSizePredictor predictor = new OutputSizePredictor( 10 );
+        Assert.assertEquals( OutputSizePredictor.DEFAULT_SIZE, predictor.predict( "page.jade" ) );
+
+        predictor.record( "page.jade", 8000 );
+        Assert.assertEquals( 9000, predictor.predict( "page.jade" ) );
+
+        // larger outputs are followed immediately, smaller ones slowly
+        predictor.record( "page.jade", 16000 );
+        Assert.assertEquals( 18000, predictor.predict( "page.jade" ) );
+        predictor.record( "page.jade", 8000 );
+        Assert.assertEquals( 16875, predictor.predict( "page.jade" ) );
+
+        predictor.clear( );
+        Assert.assertEquals( OutputSizePredictor.DEFAULT_SIZE, predictor.predict( "page.jade" ) );
+    }
+}
@@ -0,0 +1,125 @@
+package fr.paris.lutece.portal.service.template;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.neuland.jade4j.JadeConfiguration;
+import de.neuland.jade4j.parser.Parser;
+import de.neuland.jade4j.template.FileTemplateLoader;
+import de.neuland.jade4j.template.JadeTemplate;
+import de.neuland.jade4j.template.TemplateLoader;
+
+public class PersistentTemplateCacheTest
+{
+
+    private static final String LAYOUT = "include mixins\nhtml\n\tbody\n\t\tblock content\n";
+    private static final String MIXINS = "mixin item(label, active)\n\tli(class=active ? 'active' : 'inactive')= label\n";
+    private static final String PAGE = "extends layout\nblock content\n\th1 Hello #{name}\n\tul\n\t\teach item in items\n\t\t\t+item(item, item == 'b')\n"
+            + "\tif items.size() > 1\n\t\tp(id='many') many\n\telse\n\t\tp few\n\tcase name\n\t\twhen 'jade'\n\t\t\tp jade\n\t\tdefault\n\t\t\tp other\n";
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder( );
+
+    private final AtomicInteger _nCompilations = new AtomicInteger( );
+
+    private void write( String strName, String strContent ) throws IOException
+    {
+        Files.write( new File( _folder.getRoot( ), strName ).toPath( ), strContent.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    private PersistentTemplateCache createCache( final JadeConfiguration configuration ) throws IOException
+    {
+        return new PersistentTemplateCache( new File( _folder.getRoot( ), "cache" ).toPath( ), configuration, new TemplateCompiler( )
+        {
+            @Override
+            public JadeTemplate compile( String strName, TemplateLoader templateLoader ) throws IOException
+            {
+                _nCompilations.incrementAndGet( );
+                JadeTemplate template = new JadeTemplate( );
+                template.setTemplateLoader( configuration.getTemplateLoader( ) );
+                template.setRootNode( new Parser( strName, templateLoader ).parse( ) );
+                template.setMode( configuration.getMode( ) );
+                return template;
+            }
+        } );
+    }
+
+    private String render( JadeConfiguration configuration, JadeTemplate template )
+    {
+        Map<String, Object> model = new HashMap<String, Object>( );
+        model.put( "name", "jade" );
+        model.put( "items", Arrays.asList( "a", "b" ) );
+        return configuration.renderTemplate( template, model );
+    }
+
+    @Test
+    public void testPersistence( ) throws IOException
+    {
+        write( "layout.jade", LAYOUT );
+        write( "mixins.jade", MIXINS );
+        write( "page.jade", PAGE );
+        JadeConfiguration configuration = new JadeConfiguration( );
+        configuration.setTemplateLoader( new FileTemplateLoader( _folder.getRoot( ).getPath( ) + "/", "UTF-8" ) );
+
+        String strExpected = render( configuration, createCache( configuration ).compile( "page.jade", configuration.getTemplateLoader( ) ) );
+        Assert.assertEquals( 1, _nCompilations.get( ) );
+
+        JadeTemplate template = createCache( configuration ).compile( "page.jade", configuration.getTemplateLoader( ) );
+        Assert.assertEquals( 1, _nCompilations.get( ) );
+        Assert.assertEquals( strExpected, render( configuration, template ) );
+
+        write( "mixins.jade", MIXINS.replace( "li", "span" ) );
+        template = createCache( configuration ).compile( "page.jade", configuration.getTemplateLoader( ) );
+        Assert.assertEquals( 2, _nCompilations.get( ) );
+        Assert.assertTrue( render( configuration, template ).contains( "<span class=\"active\">b</span>" ) );
+    }
+
+    @Test
+    public void testSourceModifiedDuringCompilation( ) throws IOException
+    {
+        write( "page.jade", "p old" );
+        final JadeConfiguration configuration = new JadeConfiguration( );
+        configuration.setTemplateLoader( new FileTemplateLoader( _folder.getRoot( ).getPath( ) + "/", "UTF-8" ) );
+        PersistentTemplateCache cache = new PersistentTemplateCache( new File( _folder.getRoot( ), "cache" ).toPath( ), configuration, new TemplateCompiler( )
+        {
+            @Override
+            public JadeTemplate compile( String strName, TemplateLoader templateLoader ) throws IOException
+            {
+                JadeTemplate template = new JadeTemplate( );
+                template.setTemplateLoader( configuration.getTemplateLoader( ) );
+                template.setRootNode( new Parser( strName, templateLoader ).parse( ) );
+                template.setMode( configuration.getMode( ) );
+                // edited once parsed
+                write( "page.jade", "p new" );
+                return template;
+            }
+        } );
+        Assert.assertEquals( "<p>old</p>", configuration.renderTemplate( cache.compile( "page.jade", configuration.getTemplateLoader( ) ), new HashMap<String, Object>( ) ) );
+
+        _nCompilations.set( 0 );
+        JadeTemplate template = createCache( configuration ).compile( "page.jade", configuration.getTemplateLoader( ) );
+        Assert.assertEquals( 1, _nCompilations.get( ) );
+        Assert.assertEquals( "<p>new</p>", configuration.renderTemplate( template, new HashMap<String, Object>( ) ) );
+    }
+
+    @Test
+    public void testVersionWithoutPomProperties( ) throws IOException
+    {
+        // the classes of the library under test are not packaged by maven
+        String strVersion = PersistentTemplateCache.getVersion( PersistentTemplateCache.class, "/missing/pom.properties" );
+        Assert.assertEquals( 40, strVersion.length( ) );
+        Assert.assertEquals( strVersion, PersistentTemplateCache.getVersion( PersistentTemplateCache.class, "/missing/pom.properties" ) );
+        Assert.assertNotEquals( strVersion, PersistentTemplateCache.getVersion( JadeConfiguration.class, "/missing/pom.properties" ) );
+    }
+}
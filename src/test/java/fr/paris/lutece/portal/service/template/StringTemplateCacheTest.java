@@ -0,0 +1,53 @@
+package fr.paris.lutece.portal.service.template;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.neuland.jade4j.template.JadeTemplate;
+
+public class StringTemplateCacheTest
+{
+
+    @Test
+    public void testContentKeys( )
+    {
+        StringTemplateCache cache = new StringTemplateCache( 10, 1024 );
+        CompiledStringTemplate compiled = new CompiledStringTemplate( "p first", new JadeTemplate( ) );
+        cache.put( "p first", compiled );
+        Assert.assertSame( compiled, cache.get( new StringBuilder( "p " ).append( "first" ).toString( ) ) );
+        Assert.assertNull( cache.get( "p second" ) );
+    }
+
+    @Test
+    public void testEntriesBound( )
+    {
+        StringTemplateCache cache = new StringTemplateCache( 2, 1024 );
+        cache.put( "p a", new CompiledStringTemplate( "p a", new JadeTemplate( ) ) );
+        cache.put( "p b", new CompiledStringTemplate( "p b", new JadeTemplate( ) ) );
+        // a becomes the most recently used entry
+        cache.get( "p a" );
+        cache.put( "p c", new CompiledStringTemplate( "p c", new JadeTemplate( ) ) );
+        Assert.assertEquals( 2, cache.size( ) );
+        Assert.assertNotNull( cache.get( "p a" ) );
+        Assert.assertNull( cache.get( "p b" ) );
+        Assert.assertNotNull( cache.get( "p c" ) );
+    }
+
+    @Test
+    public void testBytesBound( )
+    {
+        JadeTemplate template = new JadeTemplate( );
+        long lWeight = StringTemplateCache.weigh( "p a", template );
+        StringTemplateCache cache = new StringTemplateCache( 10, 2 * lWeight );
+        cache.put( "p a", new CompiledStringTemplate( "p a", template ) );
+        cache.put( "p b", new CompiledStringTemplate( "p b", template ) );
+        cache.put( "p c", new CompiledStringTemplate( "p c", template ) );
+        Assert.assertEquals( 2 * lWeight, cache.getBytes( ) );
+        Assert.assertNull( cache.get( "p a" ) );
+        String strTooLarge = "p too large" + new String( new char[ ( int ) lWeight ] );
+        cache.put( strTooLarge, new CompiledStringTemplate( strTooLarge, template ) );
+        Assert.assertEquals( 2, cache.size( ) );
+        Assert.assertNotNull( cache.get( "p c" ) );
+    }
+
+}
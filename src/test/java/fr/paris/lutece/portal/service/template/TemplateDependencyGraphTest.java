@@ -0,0 +1,45 @@
+package fr.paris.lutece.portal.service.template;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TemplateDependencyGraphTest
+{
+
+    private static Set<String> set( String... names )
+    {
+        return new HashSet<String>( Arrays.asList( names ) );
+    }
+
+    @Test
+    public void testDependents( )
+    {
+        TemplateDependencyGraph graph = new TemplateDependencyGraph( );
+        graph.update( "layout.jade", set( "layout.jade", "mixins.jade" ) );
+        graph.update( "page.jade", set( "page.jade", "layout.jade", "mixins.jade" ) );
+        graph.update( "home.jade", set( "page.jade" ) );
+        graph.update( "other.jade", set( "footer.jade" ) );
+
+        Assert.assertEquals( set( "layout.jade", "page.jade", "home.jade" ), graph.getDependents( "mixins.jade" ) );
+        Assert.assertEquals( set( "home.jade" ), graph.getDependents( "page.jade" ) );
+        Assert.assertEquals( set( "layout.jade", "mixins.jade" ), graph.getDependencies( "page.jade" ) );
+    }
+
+    @Test
+    public void testUpdate( )
+    {
+        TemplateDependencyGraph graph = new TemplateDependencyGraph( );
+        graph.update( "page.jade", set( "layout.jade" ) );
+        graph.update( "page.jade", set( "other_layout.jade" ) );
+        Assert.assertEquals( Collections.emptySet( ), graph.getDependents( "layout.jade" ) );
+        Assert.assertEquals( set( "page.jade" ), graph.getDependents( "other_layout.jade" ) );
+        graph.remove( "page.jade" );
+        Assert.assertEquals( Collections.emptySet( ), graph.getDependents( "other_layout.jade" ) );
+    }
+
+}
@@ -0,0 +1,49 @@
+package fr.paris.lutece.portal.service.template;
+
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.neuland.jade4j.template.JadeTemplate;
+
+public class TemplateInvalidationLogTest
+{
+
+    private CompiledStringTemplate compile( TemplateInvalidationLog log, String strDependency )
+    {
+        return new CompiledStringTemplate( "include " + strDependency, new JadeTemplate( ), Collections.singleton( strDependency ), log.getGeneration( ) );
+    }
+
+    @Test
+    public void testInvalidate( )
+    {
+        TemplateInvalidationLog log = new TemplateInvalidationLog( );
+        CompiledStringTemplate menu = compile( log, "menu.jade" );
+        CompiledStringTemplate footer = compile( log, "footer.jade" );
+        Assert.assertFalse( log.isInvalidated( menu ) );
+
+        log.invalidate( "menu.jade" );
+        Assert.assertTrue( log.isInvalidated( menu ) );
+        Assert.assertFalse( log.isInvalidated( footer ) );
+        Assert.assertEquals( log.getGeneration( ), footer.getCheckedGeneration( ) );
+
+        log.invalidateAll( );
+        Assert.assertTrue( log.isInvalidated( footer ) );
+    }
+
+    @Test
+    public void testOverflow( )
+    {
+        TemplateInvalidationLog log = new TemplateInvalidationLog( );
+        CompiledStringTemplate checked = compile( log, "menu.jade" );
+        CompiledStringTemplate unchecked = compile( log, "menu.jade" );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            log.invalidate( "other" + i + ".jade" );
+            Assert.assertFalse( log.isInvalidated( checked ) );
+        }
+        // the invalidations since its compilation are no longer known
+        Assert.assertTrue( log.isInvalidated( unchecked ) );
+    }
+}
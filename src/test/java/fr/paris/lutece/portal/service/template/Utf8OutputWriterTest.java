@@ -0,0 +1,47 @@
+package fr.paris.lutece.portal.service.template;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Utf8OutputWriterTest
+{
+
+    @Test
+    public void testEncode( ) throws Exception
+    {
+        String strText = "a\u00e9\u20ac\ud83d\ude00";
+        StringBuilder sbExpected = new StringBuilder( );
+        ByteArrayOutputStream out = new ByteArrayOutputStream( );
+        Utf8OutputWriter writer = new Utf8OutputWriter( out );
+        for ( int i = 0; i < 2000; i++ )
+        {
+            writer.write( strText );
+            sbExpected.append( strText );
+        }
+        // surrogate pair split across writes, then unpaired surrogates
+        writer.write( "\ud83d" );
+        writer.write( "\ude00\ude00" );
+        writer.write( '\ud83d' );
+        writer.close( );
+        sbExpected.append( "\ud83d\ude00\ude00\ud83d" );
+        Assert.assertArrayEquals( sbExpected.toString( ).getBytes( StandardCharsets.UTF_8 ), out.toByteArray( ) );
+    }
+
+    @Test
+    public void testExpectedSegment( ) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream( );
+        Utf8OutputWriter writer = new Utf8OutputWriter( out );
+        String strSegment = "<p>segment</p>";
+        writer.expect( strSegment, "<p>encoded</p>".getBytes( StandardCharsets.UTF_8 ) );
+        writer.write( new String( strSegment ) );
+        writer.write( strSegment );
+        writer.expect( strSegment, "<p>encoded</p>".getBytes( StandardCharsets.UTF_8 ) );
+        writer.write( strSegment );
+        writer.flush( );
+        Assert.assertEquals( "<p>segment</p><p>segment</p><p>encoded</p>", new String( out.toByteArray( ), StandardCharsets.UTF_8 ) );
+    }
+}